@@ -0,0 +1,51 @@
+package com.kbakhtiari.helm.maven.plugin;
+
+import com.kbakhtiari.helm.maven.plugin.utils.OverridePayloads;
+import com.kbakhtiari.helm.maven.plugin.utils.PackageUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** the conversion of the override values into the <code>--set</code> options of helm. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OverridesBenchmark {
+
+  @Param({"WIDE", "DEEP", "LISTS"})
+  private OverridePayloads.Shape shape;
+
+  private Map<String, Object> overrides;
+
+  @Setup
+  public void setUp() {
+
+    overrides = OverridePayloads.overrides(shape);
+  }
+
+  @Benchmark
+  public Map<String, Object> flattenOverrides() {
+
+    return PackageUtils.flattenOverrides(overrides);
+  }
+
+  @Benchmark
+  public String appendOverrides() {
+
+    return AbstractHelmMojo.appendOverrides(overrides);
+  }
+}
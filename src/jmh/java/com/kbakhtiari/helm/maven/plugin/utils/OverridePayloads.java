@@ -0,0 +1,122 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** override maps and values files shaped like the ones of real builds, for the benchmarks. */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class OverridePayloads {
+
+  /** the shapes of override maps the benchmarks run with. */
+  public enum Shape {
+    /** 10000 keys in 100 groups of 100, a few of them literal keys. */
+    WIDE,
+    /** 2000 leaves at the end of chains 16 levels deep. */
+    DEEP,
+    /** 100 lists of 100 strings and 10 lists of 100 maps. */
+    LISTS
+  }
+
+  public static Map<String, Object> overrides(Shape shape) {
+
+    switch (shape) {
+      case WIDE:
+        return wide();
+      case DEEP:
+        return deep();
+      default:
+        return lists();
+    }
+  }
+
+  /**
+   * a values file with the given number of top level sections of 20 keys each, followed by a 1 MB
+   * embedded dashboard.
+   */
+  public static String valuesFile(int sections) {
+
+    final StringBuilder yaml = new StringBuilder("# generated values\n");
+    for (int section = 0; section < sections; section++) {
+      yaml.append("section").append(section).append(":\n");
+      for (int key = 0; key < 20; key++) {
+        yaml.append("  key").append(key).append(": value-").append(section).append('-');
+        yaml.append(key).append(" # comment\n");
+      }
+    }
+    yaml.append("dashboard: |\n");
+    while (yaml.length() < 1024 * 1024) {
+      yaml.append("  {\"type\": \"graph\", \"targets\": [{\"expr\": \"rate(x[5m])\"}]},\n");
+    }
+    return yaml.toString();
+  }
+
+  /** overrides touching every tenth section of a {@link #valuesFile(int)} and adding a key. */
+  public static Map<String, Object> valuesFileOverrides(int sections) {
+
+    final Map<String, Object> overrides = new LinkedHashMap<>();
+    for (int section = 0; section < sections; section += 10) {
+      final Map<String, Object> keys = new LinkedHashMap<>();
+      keys.put("key7", "override-" + section);
+      keys.put("added", "new-" + section);
+      overrides.put("section" + section, keys);
+    }
+    return overrides;
+  }
+
+  private static Map<String, Object> wide() {
+
+    final Map<String, Object> overrides = new LinkedHashMap<>();
+    for (int group = 0; group < 100; group++) {
+      final Map<String, Object> keys = new LinkedHashMap<>();
+      for (int key = 0; key < 100; key++) {
+        keys.put(key % 25 == 0 ? "^key." + key + "^" : "key" + key, "value-" + group + "-" + key);
+      }
+      overrides.put("group" + group, keys);
+    }
+    return overrides;
+  }
+
+  private static Map<String, Object> deep() {
+
+    final Map<String, Object> overrides = new LinkedHashMap<>();
+    for (int chain = 0; chain < 125; chain++) {
+      Map<String, Object> level = new LinkedHashMap<>();
+      overrides.put("chain" + chain, level);
+      for (int depth = 0; depth < 16; depth++) {
+        final Map<String, Object> next = new LinkedHashMap<>();
+        level.put("level" + depth, next);
+        level = next;
+      }
+      for (int leaf = 0; leaf < 16; leaf++) {
+        level.put("leaf" + leaf, "value-" + chain + "-" + leaf);
+      }
+    }
+    return overrides;
+  }
+
+  private static Map<String, Object> lists() {
+
+    final Map<String, Object> overrides = new LinkedHashMap<>();
+    for (int list = 0; list < 100; list++) {
+      final List<Object> items = new ArrayList<>();
+      for (int item = 0; item < 100; item++) {
+        items.add("item-" + list + "-" + item);
+      }
+      overrides.put("list" + list, items);
+    }
+    for (int list = 0; list < 10; list++) {
+      final List<Object> items = new ArrayList<>();
+      for (int item = 0; item < 100; item++) {
+        items.add(Collections.singletonMap("name", "host-" + list + "-" + item));
+      }
+      overrides.put("hosts" + list, items);
+    }
+    return overrides;
+  }
+}
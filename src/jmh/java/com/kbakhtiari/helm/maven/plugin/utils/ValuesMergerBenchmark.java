@@ -0,0 +1,81 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** the values.yaml override pipeline of the package goal. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValuesMergerBenchmark {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+
+  @Param({"WIDE", "DEEP", "LISTS"})
+  private OverridePayloads.Shape shape;
+
+  @Param({"500"})
+  private int sections;
+
+  private Map<String, Object> overrides;
+  private Map<String, Object> values;
+  private ValuesMerger merger;
+  private ValuesMerger fileMerger;
+  private byte[] valuesFile;
+
+  @Setup
+  public void setUp() throws IOException {
+
+    overrides = OverridePayloads.overrides(shape);
+    merger = ValuesMerger.of(overrides);
+    valuesFile = OverridePayloads.valuesFile(sections).getBytes(UTF_8);
+    values = MAPPER.readValue(valuesFile, Map.class);
+    fileMerger = ValuesMerger.of(OverridePayloads.valuesFileOverrides(sections));
+  }
+
+  @Benchmark
+  public ValuesMerger normalize() {
+
+    return ValuesMerger.of(overrides);
+  }
+
+  @Benchmark
+  public Map<String, Object> merge() {
+
+    return merger.merge(values);
+  }
+
+  /** the in place patch of a values file, which doesn't depend on the shape. */
+  @Benchmark
+  public byte[] patchValuesFile() {
+
+    return ValuesPatcher.patch(valuesFile, fileMerger.getOverrides());
+  }
+
+  /** the full rewrite the patch falls back to. */
+  @Benchmark
+  public byte[] rewriteValuesFile() throws IOException {
+
+    return MAPPER.writeValueAsBytes(fileMerger.merge(MAPPER.readValue(valuesFile, Map.class)));
+  }
+}
@@ -2,14 +2,23 @@ package com.kbakhtiari.helm.maven.plugin;
 
 import com.kbakhtiari.helm.maven.plugin.pojo.HelmRepository;
 import com.kbakhtiari.helm.maven.plugin.pojo.ValueOverride;
+import com.kbakhtiari.helm.maven.plugin.utils.BufferedLog;
+import com.kbakhtiari.helm.maven.plugin.utils.ChartDependencyGraph;
+import com.kbakhtiari.helm.maven.plugin.utils.ChartDiscoveryCache;
+import com.kbakhtiari.helm.maven.plugin.utils.ChartScanner;
+import com.kbakhtiari.helm.maven.plugin.utils.ChartStore;
 import com.kbakhtiari.helm.maven.plugin.utils.PackageUtils;
+import com.kbakhtiari.helm.maven.plugin.utils.ProcessRunner;
+import com.kbakhtiari.helm.maven.plugin.utils.RepositoryIndexCache;
 import lombok.Data;
 import lombok.SneakyThrows;
 import org.apache.commons.compress.utils.FileNameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.SystemUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.settings.Settings;
 import org.codehaus.plexus.util.FileUtils;
@@ -17,20 +26,29 @@ import org.codehaus.plexus.util.MatchPatterns;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.FileVisitOption;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Predicate;
+import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -59,6 +77,9 @@ public abstract class AbstractHelmMojo extends AbstractMojo {
   private static final String STRING_KEY_LIST_VALUE_TEMPLATE = "%s[%d]=%s";
   private static final String STRING_KEY_LIST_SUB_VALUE_TEMPLATE = "%s[%d].%s";
 
+  /** the log of the chart being processed by the current worker thread, if any. */
+  private static final ThreadLocal<Log> CHART_LOG = new ThreadLocal<>();
+
   @Parameter(property = "helm.skip", defaultValue = FALSE)
   protected boolean skip;
 
@@ -81,6 +102,11 @@ public abstract class AbstractHelmMojo extends AbstractMojo {
   @Parameter(property = "helm.verbose", defaultValue = FALSE)
   private boolean verbose;
 
+  /**
+   * Chart directories to leave out, as paths or ant patterns. Charts nested below an excluded chart
+   * are still found unless they are excluded themselves. The directories matched by a pattern
+   * ending in <code>/**</code>, like <code>**&#47;node_modules/**</code>, are not searched at all.
+   */
   @Parameter(property = "helm.excludes")
   private String[] excludes;
 
@@ -132,6 +158,48 @@ public abstract class AbstractHelmMojo extends AbstractMojo {
   @Parameter(defaultValue = "${settings}", readonly = true)
   private Settings settings;
 
+  @Parameter(defaultValue = "${session}", readonly = true)
+  private MavenSession session;
+
+  /**
+   * Number of charts processed concurrently by the goals supporting it. Zero or less means the
+   * number of available processors.
+   */
+  @Parameter(property = "helm.threads")
+  private int threads;
+
+  /**
+   * Stop at the first chart failing. When false, every chart is processed and all the failures are
+   * reported together.
+   */
+  @Parameter(property = "helm.failFast", defaultValue = TRUE)
+  private boolean failFast;
+
+  /** Maximum number of seconds a single helm command may run. Zero or less means no limit. */
+  @Parameter(property = "helm.processTimeout")
+  private int processTimeout;
+
+  /**
+   * Don't look for charts below a directory holding a Chart.yaml, so subcharts are only processed
+   * as part of their parent chart.
+   */
+  @Parameter(property = "helm.scan.stopAtChart", defaultValue = FALSE)
+  private boolean stopAtChart;
+
+  /** Scan the chart directory for charts with a fork-join pool. */
+  @Parameter(property = "helm.scan.parallel", defaultValue = FALSE)
+  private boolean parallelScan;
+
+  /** Directory of the content-addressed store chart archives are shared through. */
+  @Parameter(
+      property = "helm.chartStore",
+      defaultValue = "${settings.localRepository}/com/kbakhtiari/helm-maven-plugin/charts")
+  private String chartStore;
+
+  /** Number of days an archive stays in the chart store without being used. */
+  @Parameter(property = "helm.chartStore.maxAge", defaultValue = "30")
+  private int chartStoreMaxAge;
+
   @SneakyThrows
   private static <U extends Object> List<String> getKeyValue(String key, U value) {
 
@@ -179,6 +247,22 @@ public abstract class AbstractHelmMojo extends AbstractMojo {
     return path.orElseThrow(() -> new MojoExecutionException("Helm executable is not found."));
   }
 
+  /**
+   * what identifies the helm executable in fingerprints: its version, its download url and the size
+   * and modification time of the executable, so a different helm doesn't reuse earlier results.
+   */
+  List<String> getHelmIdentity() throws MojoExecutionException, IOException {
+
+    final List<String> identity = new ArrayList<>();
+    identity.add(getHelmVersion());
+    identity.add(getHelmDownloadUrl());
+    final Path helm = getHelmExecutablePath();
+    if (Files.isRegularFile(helm)) {
+      identity.add(Files.size(helm) + "@" + Files.getLastModifiedTime(helm).toMillis());
+    }
+    return identity;
+  }
+
   private Optional<Path> findInPath(final String executable) {
 
     final String[] paths = getPathsFromEnvironmentVariables();
@@ -195,39 +279,238 @@ public abstract class AbstractHelmMojo extends AbstractMojo {
     return System.getenv("PATH").split(Pattern.quote(File.pathSeparator));
   }
 
-  void callCli(String command, String errorMessage) throws MojoExecutionException {
+  @Override
+  public Log getLog() {
+
+    return Optional.ofNullable(CHART_LOG.get()).orElseGet(super::getLog);
+  }
+
+  int getWorkerCount(int tasks) {
 
-    getLog().debug("executing command: " + command);
+    return getWorkerCount(threads, tasks);
+  }
+
+  /** the workers for the tasks, at most the threads given, the available processors for none. */
+  static int getWorkerCount(int threads, int tasks) {
+
+    final int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    return Math.max(1, Math.min(workers, tasks));
+  }
 
-    AtomicInteger exitValue = new AtomicInteger(0);
+  /**
+   * brings the indexes of the repositories in the repository cache up to date, concurrently, and
+   * reports how many of them had to be downloaded.
+   */
+  void refreshIndexes(List<HelmRepository> repositories, RepositoryIndexCache cache)
+      throws MojoExecutionException {
 
+    if (repositories.isEmpty()) {
+      return;
+    }
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            getWorkerCount(repositories.size()),
+            new BasicThreadFactory.Builder().namingPattern("helm-index-%d").daemon(true).build());
     try {
-      final Process p = Runtime.getRuntime().exec(command);
-      new Thread(
-              () -> {
-                try {
-                  String inputLine = IOUtils.toString(p.getInputStream(), StandardCharsets.UTF_8);
-                  String errorLine = IOUtils.toString(p.getErrorStream(), StandardCharsets.UTF_8);
-                  if (verbose) {
-                    getLog().info(inputLine);
-                  } else {
-                    getLog().debug(inputLine);
+      final Map<String, CompletableFuture<Path>> downloads = new LinkedHashMap<>();
+      for (HelmRepository repository : repositories) {
+        downloads.put(
+            repository.getName(),
+            CompletableFuture.supplyAsync(
+                () -> {
+                  try {
+                    return cache.refresh(repository);
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                   }
-                  if (isNotBlank(errorLine)) {
-                    getLog().error(errorLine);
-                  }
-                } catch (IOException e) {
-                  getLog().error(e);
-                }
-              })
-          .start();
-      p.waitFor();
-      exitValue.set(p.exitValue());
+                },
+                executor));
+      }
+
+      final List<String> failures = new ArrayList<>();
+      for (Map.Entry<String, CompletableFuture<Path>> download : downloads.entrySet()) {
+        try {
+          download.getValue().join();
+        } catch (CompletionException e) {
+          getLog()
+              .error(
+                  format(
+                      "Unable to fetch the index of repository %s: %s",
+                      download.getKey(), e.getCause().getMessage()));
+          failures.add(download.getKey());
+        }
+      }
+      getLog()
+          .info(
+              format(
+                  "Repository indexes: %d up to date, %d downloaded",
+                  cache.getHits(), cache.getMisses()));
+      if (!failures.isEmpty()) {
+        throw new MojoExecutionException(
+            format("Unable to fetch the index of the repositories %s", failures));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  ChartStore newChartStore() {
+
+    return new ChartStore(Paths.get(chartStore), getLog());
+  }
+
+  /** removes the archives unused for too long from the store, at most once a day. */
+  void collectChartStore(ChartStore store) {
+
+    try {
+      store.collectIfDue(Duration.ofDays(chartStoreMaxAge));
+    } catch (IOException e) {
+      getLog().warn("Unable to clean up the chart store " + chartStore + ": " + e.getMessage());
+    }
+  }
+
+  void forEachChart(List<String> chartDirectories, ChartAction action)
+      throws MojoExecutionException {
+
+    forEachChart(chartDirectories, threads, action);
+  }
+
+  /** processes the charts with at most the threads given instead of helm.threads. */
+  void forEachChart(List<String> chartDirectories, int threads, ChartAction action)
+      throws MojoExecutionException {
+
+    final int workers = getWorkerCount(threads, chartDirectories.size());
+    final Map<String, Exception> failures = new LinkedHashMap<>();
+
+    if (workers == 1) {
+      for (String chartDirectory : chartDirectories) {
+        try {
+          action.execute(chartDirectory);
+        } catch (MojoExecutionException e) {
+          if (failFast) {
+            throw e;
+          }
+          failures.put(chartDirectory, e);
+        }
+      }
+    } else {
+      getLog()
+          .debug(format("processing %d charts with %d workers", chartDirectories.size(), workers));
+      final Log log = getLog();
+      final ExecutorService executor =
+          Executors.newFixedThreadPool(
+              workers,
+              new BasicThreadFactory.Builder()
+                  .namingPattern("helm-worker-%d")
+                  .daemon(true)
+                  .build());
+      try {
+        final CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        final Map<Future<Void>, String> submitted = new HashMap<>();
+        for (String chartDirectory : chartDirectories) {
+          submitted.put(
+              completionService.submit(() -> executeWithChartLog(chartDirectory, action, log)),
+              chartDirectory);
+        }
+        for (int i = 0; i < submitted.size(); i++) {
+          final Future<Void> future = completionService.take();
+          try {
+            future.get();
+          } catch (ExecutionException e) {
+            final Exception cause =
+                e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            if (failFast) {
+              throw cause instanceof MojoExecutionException
+                  ? (MojoExecutionException) cause
+                  : new MojoExecutionException(
+                      "Unable to process chart " + submitted.get(future), cause);
+            }
+            failures.put(submitted.get(future), cause);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MojoExecutionException("Interrupted while processing charts", e);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    if (!failures.isEmpty()) {
+      failures.forEach(
+          (chartDirectory, e) ->
+              getLog().error(format("chart %s failed: %s", chartDirectory, e.getMessage())));
+      throw new MojoExecutionException(
+          format(
+              "%d of %d charts failed: %s",
+              failures.size(), chartDirectories.size(), failures.keySet()),
+          failures.values().iterator().next());
+    }
+  }
+
+  /**
+   * same as {@link #forEachChart(List, ChartAction)}, but a chart is only processed after the local
+   * charts it depends on and the charts nested in its directory.
+   */
+  void forEachChartInDependencyOrder(List<String> chartDirectories, ChartAction action)
+      throws MojoExecutionException {
+
+    forEachChartInDependencyOrder(chartDirectories, threads, action);
+  }
+
+  void forEachChartInDependencyOrder(List<String> chartDirectories, int threads, ChartAction action)
+      throws MojoExecutionException {
+
+    for (List<String> level : ChartDependencyGraph.getLevels(chartDirectories)) {
+      forEachChart(level, threads, action);
+    }
+  }
+
+  private Void executeWithChartLog(String chartDirectory, ChartAction action, Log log)
+      throws MojoExecutionException {
+
+    final BufferedLog chartLog = new BufferedLog(log);
+    CHART_LOG.set(chartLog);
+    try {
+      action.execute(chartDirectory);
+      return null;
+    } finally {
+      CHART_LOG.remove();
+      chartLog.flush();
+    }
+  }
+
+  void callCli(String command, String errorMessage) throws MojoExecutionException {
+
+    callCli(command, errorMessage, null);
+  }
+
+  /**
+   * executes the command, which is split on whitespaces into its arguments. when an output file is
+   * given, the standard output of the command is written to it instead of the log.
+   */
+  void callCli(String command, String errorMessage, Path outputFile) throws MojoExecutionException {
+
+    final Log log = getLog();
+    log.debug("executing command: " + command);
+
+    final List<String> arguments = new ArrayList<>();
+    final StringTokenizer tokenizer = new StringTokenizer(command);
+    while (tokenizer.hasMoreTokens()) {
+      arguments.add(tokenizer.nextToken());
+    }
+
+    final int exitValue;
+    try {
+      exitValue = new ProcessRunner(log, verbose, processTimeout).run(arguments, outputFile);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException(format("Interrupted while processing [%s]", command), e);
     } catch (Exception e) {
       throw new MojoExecutionException(format("Error processing command [%s]", command), e);
     }
 
-    if (exitValue.get() != 0) {
+    if (exitValue != 0) {
       throw new MojoExecutionException(errorMessage);
     }
   }
@@ -244,13 +527,30 @@ public abstract class AbstractHelmMojo extends AbstractMojo {
 
     MatchPatterns exclusionPatterns = MatchPatterns.from(exclusions);
 
-    try (Stream<Path> files = Files.walk(Paths.get(path), FileVisitOption.FOLLOW_LINKS)) {
-      List<String> chartDirs =
-          files
-              .filter(p -> p.getFileName().toString().equalsIgnoreCase("chart.yaml"))
-              .map(p -> p.getParent().toString())
-              .filter(shouldIncludeDirectory(exclusionPatterns))
-              .collect(toList());
+    final ChartScanner scanner =
+        ChartScanner.builder()
+            .log(getLog())
+            .exclusions(exclusionPatterns)
+            .prunedDirectories(
+                MatchPatterns.from(
+                    exclusions.stream()
+                        .filter(pattern -> pattern.endsWith("/**"))
+                        .collect(toList())))
+            .stopAtChart(stopAtChart)
+            .parallel(parallelScan)
+            .build();
+    try {
+      List<String> chartDirs;
+      if (session != null && session.getRepositorySession() != null) {
+        chartDirs =
+            new ChartDiscoveryCache(session.getRepositorySession().getData(), getLog())
+                .get(
+                    format("%s|%s|%s", Paths.get(path).toAbsolutePath(), stopAtChart, exclusions),
+                    scanner,
+                    Paths.get(path));
+      } else {
+        chartDirs = scanner.scan(Paths.get(path));
+      }
 
       if (chartDirs.isEmpty()) {
         getLog().warn("No Charts detected - no Chart.yaml files found below " + path);
@@ -262,20 +562,6 @@ public abstract class AbstractHelmMojo extends AbstractMojo {
     }
   }
 
-  private Predicate<String> shouldIncludeDirectory(MatchPatterns exclusionPatterns) {
-
-    return inputDirectory -> {
-      boolean matches = exclusionPatterns.matches(inputDirectory, Boolean.FALSE);
-
-      if (matches) {
-        getLog().debug("Skip excluded directory " + inputDirectory);
-        return Boolean.FALSE;
-      }
-
-      return Boolean.TRUE;
-    };
-  }
-
   List<String> getChartTgzs(String path) throws MojoExecutionException {
 
     try (Stream<Path> files = Files.walk(Paths.get(path))) {
@@ -328,7 +614,7 @@ public abstract class AbstractHelmMojo extends AbstractMojo {
     return setValuesOptions.toString();
   }
 
-  private String appendOverrides(Map<String, ?> overrides) {
+  static String appendOverrides(Map<String, ?> overrides) {
 
     final Map<String, ?> flattenOverrides = PackageUtils.flattenOverrides(overrides);
     return flattenOverrides.keySet().stream()
@@ -379,4 +665,11 @@ public abstract class AbstractHelmMojo extends AbstractMojo {
         .append(getValuesOptions())
         .toString();
   }
+
+  /** A unit of work executed for a single chart directory. */
+  @FunctionalInterface
+  interface ChartAction {
+
+    void execute(String chartDirectory) throws MojoExecutionException;
+  }
 }
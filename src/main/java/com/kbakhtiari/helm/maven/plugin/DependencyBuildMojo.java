@@ -1,27 +1,148 @@
 package com.kbakhtiari.helm.maven.plugin;
 
+import com.kbakhtiari.helm.maven.plugin.utils.ChartDependencyResolver;
+import com.kbakhtiari.helm.maven.plugin.utils.ChartPackager;
+import com.kbakhtiari.helm.maven.plugin.utils.ChartStore;
+import com.kbakhtiari.helm.maven.plugin.utils.HelmRepositoryConfig;
+import com.kbakhtiari.helm.maven.plugin.utils.RepositoryIndexCache;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+
 @Mojo(name = "dependency-build", defaultPhase = LifecyclePhase.PREPARE_PACKAGE)
 public class DependencyBuildMojo extends AbstractHelmMojo {
 
+  private static final int DOWNLOAD_CONNECT_TIMEOUT_MILLIS = 10000;
+  private static final int DOWNLOAD_READ_TIMEOUT_MILLIS = 60000;
+  private static final int DOWNLOAD_RETRIES = 3;
+  private static final long DOWNLOAD_BACKOFF_MILLIS = 1000;
+
   @Parameter(property = "helm.dependency-build.skip", defaultValue = "false")
   private boolean skipDependencyBuild;
 
+  /**
+   * Refresh the indexes of the configured repositories once, with conditional requests, and let
+   * helm build the dependencies of every chart without refreshing them again.
+   */
+  @Parameter(property = "helm.dependency-build.cachedIndexes", defaultValue = "false")
+  private boolean cachedIndexes;
+
+  /**
+   * Resolve and download the dependencies in-process instead of forking <code>helm dependency
+   * build</code> per chart. Archives are kept in the chart store and hard linked into the charts.
+   * Charts with dependencies only helm can resolve are still left to helm.
+   */
+  @Parameter(property = "helm.dependency-build.native", defaultValue = "false")
+  private boolean nativeDependencyBuild;
+
   public void execute() throws MojoExecutionException {
 
     if (skip || skipDependencyBuild) {
       getLog().info("Skip dependency build");
       return;
     }
-    for (String inputDirectory : getChartDirectories(getChartDirectory())) {
+    if (cachedIndexes) {
+      refreshIndexes();
+    }
+    if (nativeDependencyBuild) {
+      buildNatively();
+      return;
+    }
+    forEachChartInDependencyOrder(getChartDirectories(getChartDirectory()), this::buildWithHelm);
+  }
+
+  private void buildNatively() throws MojoExecutionException {
+
+    final List<String> chartDirectories = getChartDirectories(getChartDirectory());
+    final Path configFile = HelmRepositoryConfig.getConfigFile(getRepositoryConfig());
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            getWorkerCount(Integer.MAX_VALUE),
+            new BasicThreadFactory.Builder()
+                .namingPattern("helm-dependency-%d")
+                .daemon(true)
+                .build());
+    final ChartStore store = newChartStore();
+    try {
+      final ChartDependencyResolver resolver =
+          ChartDependencyResolver.builder()
+              .store(store)
+              .indexCache(
+                  RepositoryIndexCache.builder()
+                      .directory(HelmRepositoryConfig.getCacheDirectory(getRepositoryCache()))
+                      .log(getLog())
+                      .build())
+              .repositories(HelmRepositoryConfig.readRepositories(configFile))
+              .packager(
+                  ChartPackager.builder().log(getLog()).executor(ForkJoinPool.commonPool()).build())
+              .executor(executor)
+              .connectTimeout(DOWNLOAD_CONNECT_TIMEOUT_MILLIS)
+              .readTimeout(DOWNLOAD_READ_TIMEOUT_MILLIS)
+              .retries(DOWNLOAD_RETRIES)
+              .backoff(DOWNLOAD_BACKOFF_MILLIS)
+              .build();
+
+      forEachChartInDependencyOrder(
+          chartDirectories,
+          inputDirectory -> {
+            try {
+              if (resolver.build(Paths.get(inputDirectory), getLog())) {
+                getLog().info("Built chart dependencies for " + inputDirectory);
+                return;
+              }
+            } catch (IOException e) {
+              throw new MojoExecutionException(
+                  "Failed to resolve dependencies of " + inputDirectory, e);
+            }
+            buildWithHelm(inputDirectory);
+          });
+      getLog()
+          .info(
+              format(
+                  "Chart dependencies: %d downloaded, %d taken from the store %s",
+                  resolver.getDownloaded(), resolver.getReused(), getChartStore()));
+      collectChartStore(store);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to read the repository config " + configFile, e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void buildWithHelm(String inputDirectory) throws MojoExecutionException {
+
+    getLog().info("Build chart dependencies for " + inputDirectory);
+
+    callCli(
+        getCommand("dependency build", cachedIndexes ? "--skip-refresh" : EMPTY, inputDirectory),
+        "Failed to resolve dependencies");
+  }
 
-      getLog().info("Build chart dependencies for " + inputDirectory);
+  private void refreshIndexes() throws MojoExecutionException {
 
-      callCli(getCommand("dependency build", inputDirectory), "Failed to resolve dependencies");
+    final Path configFile = HelmRepositoryConfig.getConfigFile(getRepositoryConfig());
+    try {
+      refreshIndexes(
+          HelmRepositoryConfig.readRepositories(configFile),
+          RepositoryIndexCache.builder()
+              .directory(HelmRepositoryConfig.getCacheDirectory(getRepositoryCache()))
+              .log(getLog())
+              .build());
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to read the repository config " + configFile, e);
     }
   }
 }
@@ -22,11 +22,12 @@ public class DryRunMojo extends AbstractHelmMojo {
       getLog().info("Skip dry run");
       return;
     }
-    for (String inputDirectory : getChartDirectories(getChartDirectory())) {
+    forEachChartInDependencyOrder(
+        getChartDirectories(getChartDirectory()),
+        inputDirectory -> {
+          getLog().info("Perform dry-run for chart " + inputDirectory);
 
-      getLog().info("Perform dry-run for chart " + inputDirectory);
-
-      callCli(getCommand(action, " --dry-run ", inputDirectory), "There are test failures");
-    }
+          callCli(getCommand(action, " --dry-run ", inputDirectory), "There are test failures");
+        });
   }
 }
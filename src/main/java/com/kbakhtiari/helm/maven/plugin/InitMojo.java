@@ -2,6 +2,11 @@ package com.kbakhtiari.helm.maven.plugin;
 
 import com.kbakhtiari.helm.maven.plugin.pojo.HelmRepository;
 import com.kbakhtiari.helm.maven.plugin.utils.ArchiveEntrySupplier;
+import com.kbakhtiari.helm.maven.plugin.utils.HashUtils;
+import com.kbakhtiari.helm.maven.plugin.utils.HelmBinaryCache;
+import com.kbakhtiari.helm.maven.plugin.utils.HelmDownloader;
+import com.kbakhtiari.helm.maven.plugin.utils.HelmRepositoryConfig;
+import com.kbakhtiari.helm.maven.plugin.utils.RepositoryIndexCache;
 import lombok.Data;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveException;
@@ -18,21 +23,24 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.Os;
 
 import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.AclEntry;
 import java.nio.file.attribute.AclEntryPermission;
 import java.nio.file.attribute.AclEntryType;
 import java.nio.file.attribute.AclFileAttributeView;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
@@ -52,7 +60,10 @@ public class InitMojo extends AbstractHelmMojo {
 
   private static final String AUTH_TEMPLATE = "--username=%s --password=%s";
   private static final String ADD_REPO_TEMPLATE = "repo add %s %s %s";
+  private static final String STABLE_REPO_NAME = "stable";
+  private static final String STABLE_REPO_URL = "https://charts.helm.sh/stable";
   private static final String HELM_DOWNLOAD_URL_TEMPLATE = "https://get.helm.sh/helm-v%s-%s-%s.%s";
+  private static final String CHECKSUM_SUFFIX = ".sha256sum";
 
   @Parameter(property = "helm.init.skip", defaultValue = "false")
   private boolean skipInit;
@@ -60,6 +71,52 @@ public class InitMojo extends AbstractHelmMojo {
   @Parameter(property = "helm.init.add-default-repo", defaultValue = "true")
   private boolean addDefaultRepo;
 
+  /**
+   * Keep the downloaded helm executable in a cache shared by all the builds and modules, keyed by
+   * helm version, OS and architecture (or by download URL when one is configured).
+   */
+  @Parameter(property = "helm.init.useCache", defaultValue = "true")
+  private boolean useCache;
+
+  @Parameter(
+      property = "helm.init.cacheDirectory",
+      defaultValue = "${settings.localRepository}/com/kbakhtiari/helm-maven-plugin/helm")
+  private String cacheDirectory;
+
+  /**
+   * Verify the downloaded archive against the sha256 published next to it. A helmDownloadUrl
+   * without a published checksum is not verified, with a warning, unless helmChecksum is given.
+   */
+  @Parameter(property = "helm.init.verifyChecksum", defaultValue = "true")
+  private boolean verifyChecksum;
+
+  /** Expected sha256 of the downloaded archive. Fetched from the download location when empty. */
+  @Parameter(property = "helm.init.checksum")
+  private String helmChecksum;
+
+  @Parameter(property = "helm.init.connectTimeout", defaultValue = "10000")
+  private int downloadConnectTimeout;
+
+  @Parameter(property = "helm.init.readTimeout", defaultValue = "60000")
+  private int downloadReadTimeout;
+
+  @Parameter(property = "helm.init.retries", defaultValue = "3")
+  private int downloadRetries;
+
+  /** Milliseconds to wait before the first retry of a download, doubled for every further one. */
+  @Parameter(property = "helm.init.backoff", defaultValue = "1000")
+  private long downloadBackoff;
+
+  @Parameter(property = "helm.init.bufferSize", defaultValue = "65536")
+  private int downloadBufferSize;
+
+  /**
+   * Register all the repositories by writing the repository config file in one pass and fetch their
+   * indexes concurrently, instead of running <code>helm repo add</code> for each of them.
+   */
+  @Parameter(property = "helm.init.batchRepositories", defaultValue = "false")
+  private boolean batchRepositories;
+
   public void execute() throws MojoExecutionException {
 
     if (skip || skipInit) {
@@ -87,10 +144,15 @@ public class InitMojo extends AbstractHelmMojo {
       downloadAndUnpackHelm();
     }
 
+    if (batchRepositories) {
+      addRepositories();
+      return;
+    }
+
     if (addDefaultRepo) {
       getLog().info("Adding default repo [stable]");
       callCli(
-          getHelmCommand("repo add stable https://charts.helm.sh/stable", EMPTY),
+          getHelmCommand(format("repo add %s %s", STABLE_REPO_NAME, STABLE_REPO_URL), EMPTY),
           "Unable add repo");
     }
 
@@ -119,6 +181,39 @@ public class InitMojo extends AbstractHelmMojo {
     }
   }
 
+  private void addRepositories() throws MojoExecutionException {
+
+    final List<HelmRepository> repositories = new ArrayList<>();
+    if (addDefaultRepo) {
+      repositories.add(
+          HelmRepository.builder().name(STABLE_REPO_NAME).url(STABLE_REPO_URL).build());
+    }
+    if (getHelmExtraRepos() != null) {
+      repositories.addAll(Arrays.asList(getHelmExtraRepos()));
+    }
+    if (repositories.isEmpty()) {
+      return;
+    }
+
+    final Path configFile = HelmRepositoryConfig.getConfigFile(getRepositoryConfig());
+    getLog().info(format("Adding %d repositories to %s", repositories.size(), configFile));
+    try {
+      HelmRepositoryConfig.addRepositories(configFile, repositories, getLog());
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to write the repository config " + configFile, e);
+    }
+    refreshIndexes(
+        repositories,
+        RepositoryIndexCache.builder()
+            .directory(HelmRepositoryConfig.getCacheDirectory(getRepositoryCache()))
+            .log(getLog())
+            .connectTimeout(downloadConnectTimeout)
+            .readTimeout(downloadReadTimeout)
+            .retries(downloadRetries)
+            .backoff(downloadBackoff)
+            .build());
+  }
+
   protected void downloadAndUnpackHelm() throws MojoExecutionException {
 
     Path directory = Paths.get(getHelmExecutableDirectory());
@@ -128,40 +223,94 @@ public class InitMojo extends AbstractHelmMojo {
     }
 
     String url = getHelmDownloadUrl();
+    String cacheKey;
     if (isEmpty(url)) {
       String os = getOperatingSystem();
       String architecture = getArchitecture();
       String extension = getExtension();
       url = format(HELM_DOWNLOAD_URL_TEMPLATE, getHelmVersion(), os, architecture, extension);
+      cacheKey = format("%s/%s-%s", getHelmVersion(), os, architecture);
+    } else {
+      cacheKey = "url-" + HashUtils.sha256Hex(url).substring(0, 16);
+    }
+
+    final String downloadUrl = url;
+    final Path helmPath = directory.resolve(url.endsWith(".zip") ? "helm.exe" : "helm");
+    try {
+      getLog().debug("creating directory: " + directory);
+      Files.createDirectories(directory);
+
+      if (useCache) {
+        final Path cached =
+            new HelmBinaryCache(Paths.get(cacheDirectory), getLog())
+                .get(
+                    cacheKey,
+                    helmPath.getFileName().toString(),
+                    target -> downloadHelm(downloadUrl, target));
+        getLog().debug("Copying cached helm executable " + cached + " to " + helmPath);
+        Files.copy(cached, helmPath, StandardCopyOption.REPLACE_EXISTING);
+      } else {
+        downloadHelm(downloadUrl, helmPath);
+      }
+      addExecPermission(helmPath);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to download and extract helm executable.", e);
+    }
+  }
+
+  private void downloadHelm(String url, Path helmPath) throws IOException, MojoExecutionException {
+
+    final HelmDownloader downloader =
+        HelmDownloader.builder()
+            .log(getLog())
+            .connectTimeout(downloadConnectTimeout)
+            .readTimeout(downloadReadTimeout)
+            .bufferSize(downloadBufferSize)
+            .retries(downloadRetries)
+            .backoff(downloadBackoff)
+            .build();
+
+    String checksum = helmChecksum;
+    if (verifyChecksum && isEmpty(checksum)) {
+      getLog().debug("Downloading Helm checksum: " + url + CHECKSUM_SUFFIX);
+      try {
+        checksum = downloader.fetchChecksum(url + CHECKSUM_SUFFIX);
+      } catch (FileNotFoundException e) {
+        if (isEmpty(getHelmDownloadUrl())) {
+          throw e;
+        }
+        getLog()
+            .warn(
+                format(
+                    "No checksum is published at %s%s, the helm archive is not verified",
+                    url, CHECKSUM_SUFFIX));
+      }
     }
 
+    final Path archive = helmPath.resolveSibling(url.substring(url.lastIndexOf('/') + 1));
     getLog().debug("Downloading Helm: " + url);
-    try (InputStream dis = new URL(url).openStream();
+    downloader.download(url, verifyChecksum ? checksum : null, archive);
+
+    try (InputStream dis = Files.newInputStream(archive);
         InputStream cis = createCompressorInputStream(dis);
         ArchiveInputStream is = createArchiverInputStream(cis)) {
 
-      getLog().debug("creating directory: " + directory);
-      Files.createDirectories(directory);
-
-      final Path helmPath =
-          Stream.generate(new ArchiveEntrySupplier(is, getLog()))
-              .filter(not(Objects::isNull))
-              .filter(not(ArchiveEntry::isDirectory))
-              .map(ArchiveEntry::getName)
-              .filter(name -> name.endsWith("helm.exe") || name.endsWith("helm"))
-              .peek(name -> getLog().debug("Use archive entry with name: " + name))
-              .map(name -> name.endsWith(".exe") ? "helm.exe" : "helm")
-              .map(helm -> directory.resolve(helm))
-              .findAny()
-              .orElseThrow(
-                  () -> new MojoExecutionException("Unable to find helm executable in tar file."));
+      Stream.generate(new ArchiveEntrySupplier(is, getLog()))
+          .filter(not(Objects::isNull))
+          .filter(not(ArchiveEntry::isDirectory))
+          .map(ArchiveEntry::getName)
+          .filter(name -> name.endsWith("helm.exe") || name.endsWith("helm"))
+          .peek(name -> getLog().debug("Use archive entry with name: " + name))
+          .findAny()
+          .orElseThrow(
+              () -> new MojoExecutionException("Unable to find helm executable in tar file."));
 
       try (FileOutputStream output = new FileOutputStream(helmPath.toFile())) {
         IOUtils.copy(is, output);
       }
       addExecPermission(helmPath);
-    } catch (IOException e) {
-      throw new MojoExecutionException("Unable to download and extract helm executable.", e);
+    } finally {
+      Files.deleteIfExists(archive);
     }
   }
 
@@ -1,12 +1,28 @@
 package com.kbakhtiari.helm.maven.plugin;
 
+import com.kbakhtiari.helm.maven.plugin.utils.ChartPreLinter;
+import com.kbakhtiari.helm.maven.plugin.utils.LintReport;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 
+/**
+ * Lints all charts, concurrently with up to helm.threads workers, and only fails once every chart
+ * was linted, so all failures are reported at once. The results are written as a JUnit XML and a
+ * JSON report. Charts are checked in-process before helm is forked, see {@link #preLint}.
+ */
 @Mojo(name = "lint", defaultPhase = LifecyclePhase.TEST)
 public class LintMojo extends AbstractHelmMojo {
 
@@ -16,18 +32,116 @@ public class LintMojo extends AbstractHelmMojo {
   @Parameter(property = "helm.lint.strict", defaultValue = "false")
   private boolean lintStrict;
 
+  /**
+   * Check the structure of every chart in-process first: Chart.yaml with its required fields, its
+   * apiVersion, type and version, and values.yaml being valid YAML. Charts failing these checks
+   * aren't passed to helm.
+   */
+  @Parameter(property = "helm.lint.preLint", defaultValue = "true")
+  private boolean preLint;
+
+  /**
+   * Only run the in-process checks of {@link #preLint}, without forking helm, e.g. in PR builds.
+   */
+  @Parameter(property = "helm.lint.preLintOnly", defaultValue = "false")
+  private boolean preLintOnly;
+
+  /** Directory the JUnit XML and JSON reports of the lint are written to. */
+  @Parameter(
+      property = "helm.lint.reportDirectory",
+      defaultValue = "${project.build.directory}/helm-lint-reports")
+  private String reportDirectory;
+
   public void execute() throws MojoExecutionException {
 
     if (skip || skipLint) {
       getLog().info("Skip lint");
       return;
     }
-    for (String inputDirectory : getChartDirectories(getChartDirectory())) {
 
-      getLog().info("Testing chart " + inputDirectory);
-      callCli(
-          getCommand("lint", lintStrict ? "--strict" : EMPTY, "There are test failures"),
-          "There are test failures");
+    final List<String> chartDirectories = getChartDirectories(getChartDirectory());
+    final Path reports = Paths.get(reportDirectory);
+    final LintReport report = new LintReport();
+    forEachChart(chartDirectories, inputDirectory -> lint(inputDirectory, reports, report));
+
+    try {
+      report.write(reports);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to write the lint report to " + reports, e);
+    }
+    final List<LintReport.Result> failures = report.getFailures();
+    getLog()
+        .info(
+            format(
+                "Linted %d charts, %d failed, report written to %s",
+                chartDirectories.size(), failures.size(), reports));
+    if (!failures.isEmpty()) {
+      failures.forEach(
+          failure -> getLog().error(format("chart %s failed the lint", failure.getChart())));
+      throw new MojoExecutionException(
+          format(
+              "There are test failures: %d of %d charts failed the lint",
+              failures.size(), chartDirectories.size()));
+    }
+  }
+
+  /**
+   * <code>helm lint</code> takes the chart and the values, but none of the release options {@link
+   * #getCommand(String, String, String)} adds.
+   */
+  private String getLintCommand(String inputDirectory) throws MojoExecutionException {
+
+    return getHelmCommand("lint", (lintStrict ? "--strict " : EMPTY) + inputDirectory)
+        + (isVerbose() ? " --debug " : EMPTY)
+        + getValuesOptions();
+  }
+
+  /** lints the chart and records the result, a failing lint doesn't stop the others. */
+  private void lint(String inputDirectory, Path reports, LintReport report)
+      throws MojoExecutionException {
+
+    getLog().info("Testing chart " + inputDirectory);
+    final long start = System.nanoTime();
+    if (preLint || preLintOnly) {
+      final List<String> problems = ChartPreLinter.check(Paths.get(inputDirectory));
+      problems.forEach(problem -> getLog().error(problem));
+      if (!problems.isEmpty() || preLintOnly) {
+        report.add(
+            inputDirectory,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            problems.isEmpty() ? null : "The chart failed the pre-lint",
+            String.join("\n", problems));
+        return;
+      }
+    }
+
+    String failure = null;
+    String output = EMPTY;
+    try {
+      Files.createDirectories(reports);
+      final Path outputFile = Files.createTempFile(reports, "lint", ".log");
+      try {
+        callCli(getLintCommand(inputDirectory), "There are test failures", outputFile);
+      } catch (MojoExecutionException e) {
+        failure = e.getMessage();
+      } finally {
+        output = new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8);
+        Files.deleteIfExists(outputFile);
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to record the lint output of " + inputDirectory, e);
+    }
+
+    for (String line : output.isEmpty() ? new String[0] : output.split("\\R")) {
+      if (failure != null) {
+        getLog().error(line);
+      } else if (isVerbose()) {
+        getLog().info(line);
+      } else {
+        getLog().debug(line);
+      }
     }
+    report.add(
+        inputDirectory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failure, output);
   }
 }
@@ -1,13 +1,32 @@
 package com.kbakhtiari.helm.maven.plugin;
 
+import com.kbakhtiari.helm.maven.plugin.utils.ChartDependencyGraph;
+import com.kbakhtiari.helm.maven.plugin.utils.ChartDependencyResolver;
+import com.kbakhtiari.helm.maven.plugin.utils.ChartPackager;
+import com.kbakhtiari.helm.maven.plugin.utils.ChartStore;
+import com.kbakhtiari.helm.maven.plugin.utils.PackageIndex;
+import com.kbakhtiari.helm.maven.plugin.utils.ValuesMerger;
 import lombok.Data;
+import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
+import static com.kbakhtiari.helm.maven.plugin.utils.PackageUtils.getArchiveName;
+import static com.kbakhtiari.helm.maven.plugin.utils.PackageUtils.getChartName;
 import static com.kbakhtiari.helm.maven.plugin.utils.PackageUtils.overrideValuesFile;
 import static com.kbakhtiari.helm.maven.plugin.utils.PackageUtils.toMap;
 import static java.lang.String.format;
@@ -20,6 +39,36 @@ public class PackageMojo extends AbstractHelmMojo {
   @Parameter(property = "helm.package.skip", defaultValue = "false")
   private boolean skipPackage;
 
+  /**
+   * Skip charts whose content, overrides, chartVersion and appVersion did not change since they
+   * were last packaged, and keep their existing archive.
+   */
+  @Parameter(property = "helm.package.incremental", defaultValue = "true")
+  private boolean incremental;
+
+  /**
+   * Package the charts in-process instead of forking <code>helm package</code> for every chart. The
+   * archives honor .helmignore and the chartVersion and appVersion overrides like helm does.
+   */
+  @Parameter(property = "helm.package.native", defaultValue = "false")
+  private boolean nativePackaging;
+
+  /**
+   * Write byte for byte reproducible archives: fixed timestamps, permissions and owners for every
+   * entry and a gzip header without a timestamp. Archives written by helm are normalized
+   * afterwards.
+   */
+  @Parameter(property = "helm.package.reproducible", defaultValue = "false")
+  private boolean reproducible;
+
+  /**
+   * Keep the packaged archives in the chart store and, before a chart is packaged, hard link the
+   * archives of its local (<code>file://</code>) dependencies packaged earlier in the build into
+   * its charts directory, so it ships the dependencies just packaged.
+   */
+  @Parameter(property = "helm.package.linkDependencies", defaultValue = "false")
+  private boolean linkDependencies;
+
   @SneakyThrows
   public void execute() {
 
@@ -28,30 +77,193 @@ public class PackageMojo extends AbstractHelmMojo {
       return;
     }
 
-    for (String inputDirectory : getChartDirectories(getChartDirectory())) {
+    final Map overridesMap = toMap(getValues().getOverrides());
+    getLog().debug("the normalized map is: " + overridesMap);
+    final ValuesMerger merger = ValuesMerger.of(overridesMap);
 
-      getLog().info("Packaging chart " + inputDirectory);
+    final PackageIndex index =
+        incremental ? PackageIndex.load(Paths.get(getOutputDirectory()), getLog()) : null;
+    final ChartStore store = linkDependencies ? newChartStore() : null;
+    final Map<Path, StoredArchive> stored = new ConcurrentHashMap<>();
+    try {
+      forEachChartInDependencyOrder(
+          getChartDirectories(getChartDirectory()),
+          inputDirectory -> packageChart(inputDirectory, merger, index, store, stored));
+    } finally {
+      if (index != null) {
+        index.save();
+      }
+    }
+    if (store != null) {
+      collectChartStore(store);
+    }
+  }
+
+  private void packageChart(
+      String inputDirectory,
+      ValuesMerger merger,
+      PackageIndex index,
+      ChartStore store,
+      Map<Path, StoredArchive> stored)
+      throws MojoExecutionException {
 
-      // final Map normalizeMapKeys = flattenOverrides(toMap(getValues().getOverrides()));
-      final Map overridesMap = toMap(getValues().getOverrides());
-      getLog().debug("the normalized map is: " + overridesMap);
-      overrideValuesFile(inputDirectory, overridesMap, getLog());
+    getLog().info("Packaging chart " + inputDirectory);
 
-      StringBuilder args =
-          new StringBuilder(format("%s -d %s", inputDirectory, getOutputDirectory()));
+    overrideValuesFile(inputDirectory, merger, getLog());
+    if (store != null) {
+      linkLocalDependencies(inputDirectory, store, stored);
+    }
 
-      if (isNotEmpty(getChartVersion())) {
-        getLog().info(format("Setting chart version to %s", getChartVersion()));
-        args.append(" --version ").append(getChartVersion());
+    final Optional<Path> archive =
+        getArchiveName(inputDirectory, getChartVersion())
+            .map(name -> Paths.get(getOutputDirectory(), name));
+    String fingerprint = null;
+    if (index != null && archive.isPresent()) {
+      try {
+        final List<String> inputs =
+            new ArrayList<>(
+                Arrays.asList(
+                    getValues().getOverrides(),
+                    getChartVersion(),
+                    getAppVersion(),
+                    String.valueOf(nativePackaging),
+                    String.valueOf(reproducible)));
+        if (!nativePackaging) {
+          inputs.addAll(getHelmIdentity());
+        }
+        fingerprint =
+            PackageIndex.fingerprint(Paths.get(inputDirectory), inputs.toArray(new String[0]));
+      } catch (IOException e) {
+        throw new MojoExecutionException("Unable to fingerprint the chart at " + inputDirectory, e);
       }
+      if (index.isUpToDate(inputDirectory, fingerprint)) {
+        getLog().info(format("Chart is up to date, reusing %s", archive.get()));
+        store(inputDirectory, archive, store, stored);
+        return;
+      }
+    }
 
-      if (isNotEmpty(getAppVersion())) {
-        getLog().info(format("Setting App version to %s", getAppVersion()));
-        args.append(" --app-version ").append(getAppVersion());
+    if (nativePackaging) {
+      packageNatively(inputDirectory);
+    } else {
+      packageWithHelm(inputDirectory);
+      if (reproducible) {
+        normalize(inputDirectory, archive);
       }
-      callCli(
-          getHelmCommand("package", args.toString()),
-          "Unable to package chart at " + inputDirectory);
     }
+
+    if (fingerprint != null) {
+      index.update(inputDirectory, fingerprint, archive.get());
+    }
+    store(inputDirectory, archive, store, stored);
+  }
+
+  private void linkLocalDependencies(
+      String inputDirectory, ChartStore store, Map<Path, StoredArchive> stored)
+      throws MojoExecutionException {
+
+    final Path chartsDirectory = Paths.get(inputDirectory, "charts");
+    for (Path dependency :
+        ChartDependencyGraph.getLocalDependencies(Paths.get(inputDirectory).toAbsolutePath())) {
+      final StoredArchive archive = stored.get(dependency);
+      if (archive == null) {
+        continue;
+      }
+      try {
+        ChartDependencyResolver.removeArchives(chartsDirectory, archive.name);
+        store.materialize(archive.sha256, chartsDirectory.resolve(archive.fileName));
+        getLog().debug(format("linked %s into %s", archive.fileName, chartsDirectory));
+      } catch (IOException e) {
+        throw new MojoExecutionException(
+            format("Unable to link %s into %s", archive.fileName, chartsDirectory), e);
+      }
+    }
+  }
+
+  private void store(
+      String inputDirectory,
+      Optional<Path> archive,
+      ChartStore store,
+      Map<Path, StoredArchive> stored)
+      throws MojoExecutionException {
+
+    final Optional<String> name = getChartName(inputDirectory);
+    if (store == null || !archive.isPresent() || !name.isPresent()) {
+      return;
+    }
+    try {
+      stored.put(
+          Paths.get(inputDirectory).toAbsolutePath().normalize(),
+          new StoredArchive(
+              name.get(), archive.get().getFileName().toString(), store.put(archive.get())));
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to add " + archive.get() + " to the chart store", e);
+    }
+  }
+
+  private void packageNatively(String inputDirectory) throws MojoExecutionException {
+
+    try {
+      final Path archive =
+          newPackager()
+              .pack(
+                  Paths.get(inputDirectory),
+                  Paths.get(getOutputDirectory()),
+                  getChartVersion(),
+                  getAppVersion());
+      getLog().info("Successfully packaged chart and saved it to: " + archive);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to package chart at " + inputDirectory, e);
+    }
+  }
+
+  private void normalize(String inputDirectory, Optional<Path> archive)
+      throws MojoExecutionException {
+
+    if (!archive.isPresent()) {
+      getLog()
+          .warn("Unable to determine the archive of " + inputDirectory + ", not normalizing it");
+      return;
+    }
+    try {
+      newPackager().normalize(archive.get());
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to normalize chart archive " + archive.get(), e);
+    }
+  }
+
+  private ChartPackager newPackager() {
+
+    return ChartPackager.builder()
+        .log(getLog())
+        .executor(ForkJoinPool.commonPool())
+        .reproducible(reproducible)
+        .build();
+  }
+
+  private void packageWithHelm(String inputDirectory) throws MojoExecutionException {
+
+    StringBuilder args =
+        new StringBuilder(format("%s -d %s", inputDirectory, getOutputDirectory()));
+
+    if (isNotEmpty(getChartVersion())) {
+      getLog().info(format("Setting chart version to %s", getChartVersion()));
+      args.append(" --version ").append(getChartVersion());
+    }
+
+    if (isNotEmpty(getAppVersion())) {
+      getLog().info(format("Setting App version to %s", getAppVersion()));
+      args.append(" --app-version ").append(getAppVersion());
+    }
+    callCli(
+        getHelmCommand("package", args.toString()), "Unable to package chart at " + inputDirectory);
+  }
+
+  @RequiredArgsConstructor
+  private static class StoredArchive {
+
+    private final String name;
+    private final String fileName;
+    private final String sha256;
   }
 }
@@ -1,16 +1,29 @@
 package com.kbakhtiari.helm.maven.plugin;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.kbakhtiari.helm.maven.plugin.pojo.HelmRepository;
+import com.kbakhtiari.helm.maven.plugin.utils.HashUtils;
+import com.kbakhtiari.helm.maven.plugin.utils.OciRegistryClient;
+import com.kbakhtiari.helm.maven.plugin.utils.PackageUtils;
+import com.kbakhtiari.helm.maven.plugin.utils.PushDigestCache;
 import lombok.Data;
 import lombok.SneakyThrows;
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
 
 import static com.kbakhtiari.helm.maven.plugin.utils.Constants.MojoDefaultConstants.FALSE;
 import static java.lang.String.format;
@@ -21,11 +34,42 @@ import static org.apache.commons.lang3.StringUtils.EMPTY;
 public class PushMojo extends AbstractHelmMojo {
 
   private static final String LOGIN_COMMAND_TEMPLATE = " registry login -u %s -p %s %s ";
-  private static final String CHART_SAVE_PUSH_TEMPLATE = " %s %s/%s:%s ";
+  private static final String CHART_SAVE_PUSH_TEMPLATE = " %s %s ";
+  private static final long RETRY_BACKOFF_MILLIS = 1000;
+  private static final int LOOKUP_TIMEOUT_MILLIS = 10000;
 
   @Parameter(property = "helm.push.skip", defaultValue = FALSE)
   private boolean skipPush;
 
+  /** Number of times the upload of a single chart is retried before the push fails. */
+  @Parameter(property = "helm.push.retries", defaultValue = "2")
+  private int pushRetries;
+
+  /**
+   * Skip the upload of a chart when the registry still holds the manifest it stored when the same
+   * archive was pushed from this machine before.
+   */
+  @Parameter(property = "helm.push.skipUnchanged", defaultValue = "true")
+  private boolean skipUnchanged;
+
+  /** File remembering the digests of the charts pushed from this machine. */
+  @Parameter(
+      property = "helm.push.digestCache",
+      defaultValue =
+          "${settings.localRepository}/com/kbakhtiari/helm-maven-plugin/push-digests.json")
+  private String pushDigestCache;
+
+  /** Look up the manifests of the registry over http instead of https. */
+  @Parameter(property = "helm.push.plainHttp", defaultValue = FALSE)
+  private boolean plainHttp;
+
+  /**
+   * Push every archive to <code>&lt;registry&gt;/&lt;chart name&gt;:&lt;chart version&gt;</code>
+   * from the Chart.yaml in it, instead of the release name and chart version of the build.
+   */
+  @Parameter(property = "helm.push.byChart", defaultValue = FALSE)
+  private boolean pushByChart;
+
   @SneakyThrows
   public void execute() {
 
@@ -50,40 +94,193 @@ public class PushMojo extends AbstractHelmMojo {
         "Unable to login to the registry: " + registry.getUrl());
 
     getLog().info("Uploading to " + registry.getUrl());
-    getChartTgzs(getOutputDirectory())
-        .forEach(
-            chartTgzFile -> {
-              getLog().info("Uploading " + chartTgzFile);
-              try {
-                uploadSingle(Paths.get(chartTgzFile), registry);
-              } catch (MojoExecutionException e) {
-                throw new RuntimeException(e);
-              }
-            });
+    final Map<String, PushResult> results = new ConcurrentSkipListMap<>();
+    final PushDigestCache digests =
+        skipUnchanged ? PushDigestCache.load(Paths.get(pushDigestCache), getLog()) : null;
+    final OciRegistryClient client =
+        OciRegistryClient.builder()
+            .log(getLog())
+            .username(registry.getUsername())
+            .password(registry.getPassword())
+            .plainHttp(plainHttp)
+            .connectTimeout(LOOKUP_TIMEOUT_MILLIS)
+            .readTimeout(LOOKUP_TIMEOUT_MILLIS)
+            .build();
+    final List<String> chartTgzs = getChartTgzs(getOutputDirectory());
+    int pushThreads = getThreads();
+    if (!pushByChart && chartTgzs.size() > 1) {
+      getLog()
+          .warn(
+              format(
+                  "The %d charts are all pushed to %s/%s:%s, one after the other; "
+                      + "set helm.push.byChart to push each to the reference of its chart",
+                  chartTgzs.size(), registry.getUrl(), getReleaseName(), getChartVersion()));
+      pushThreads = 1;
+    }
+    try {
+      forEachChart(
+          chartTgzs,
+          pushThreads,
+          chartTgzFile ->
+              results.put(chartTgzFile, push(Paths.get(chartTgzFile), registry, client, digests)));
+    } finally {
+      logSummary(results);
+      if (digests != null) {
+        digests.save();
+      }
+    }
+  }
+
+  private PushResult push(
+      Path tgz, HelmRepository registry, OciRegistryClient client, PushDigestCache digests)
+      throws MojoExecutionException {
+
+    final String reference = getReference(tgz, registry);
+    if (digests == null) {
+      return upload(tgz, reference);
+    }
+
+    final String chart = tgz.getFileName().toString();
+    String chartDigest = null;
+    try {
+      chartDigest = "sha256:" + HashUtils.sha256Hex(tgz);
+      final String pushed = digests.getManifestDigest(chart, reference, chartDigest);
+      if (pushed != null && pushed.equals(client.getManifestDigest(reference))) {
+        getLog().info(format("%s is unchanged in %s, skipping the upload", tgz, reference));
+        return new PushResult(0, 0, 0, true);
+      }
+    } catch (IOException e) {
+      getLog()
+          .warn(
+              format(
+                  "Unable to compare %s with %s (%s), uploading it",
+                  tgz, reference, e.getMessage()));
+    }
+
+    final PushResult result = upload(tgz, reference);
+    if (chartDigest != null) {
+      try {
+        final String manifestDigest = client.getManifestDigest(reference);
+        if (manifestDigest != null) {
+          digests.update(chart, reference, chartDigest, manifestDigest);
+        }
+      } catch (IOException e) {
+        getLog().debug("Unable to look up the pushed manifest of " + reference, e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * the reference the archive is pushed to, named after the release and tagged with the chart
+   * version of the build. with pushByChart, it is named and tagged after the chart packaged in it
+   * instead, so the charts of a project don't overwrite each other; the release name and the chart
+   * version are then only used when the archive can't be read.
+   */
+  String getReference(Path tgz, HelmRepository registry) {
+
+    if (!pushByChart) {
+      return format("%s/%s:%s", registry.getUrl(), getReleaseName(), getChartVersion());
+    }
+    final Optional<JsonNode> chart = PackageUtils.getArchivedChart(tgz);
+    if (!chart.isPresent()) {
+      getLog().debug("Unable to read the chart of " + tgz + ", using the release name and version");
+    }
+    final String name =
+        chart
+            .map(c -> c.path("name").asText(EMPTY))
+            .filter(StringUtils::isNotEmpty)
+            .orElse(getReleaseName());
+    final String version =
+        chart
+            .map(c -> c.path("version").asText(EMPTY))
+            .filter(StringUtils::isNotEmpty)
+            .orElse(getChartVersion());
+    return format("%s/%s:%s", registry.getUrl(), name, version);
+  }
+
+  private PushResult upload(Path tgz, String reference) throws MojoExecutionException {
+
+    final long start = System.nanoTime();
+    for (int attempt = 0; ; attempt++) {
+      getLog().info("Uploading " + tgz);
+      try {
+        uploadSingle(tgz, reference);
+        return new PushResult(
+            tgz.toFile().length(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            attempt + 1,
+            false);
+      } catch (MojoExecutionException e) {
+        if (attempt >= pushRetries) {
+          throw e;
+        }
+        final long delay = RETRY_BACKOFF_MILLIS << attempt;
+        getLog()
+            .warn(
+                format(
+                    "Uploading %s failed (%s), retrying in %d ms [%d/%d]",
+                    tgz, e.getMessage(), delay, attempt + 1, pushRetries));
+        try {
+          TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw new MojoExecutionException("Interrupted while retrying upload of " + tgz, e);
+        }
+      }
+    }
+  }
+
+  private void logSummary(Map<String, PushResult> results) {
+
+    if (results.isEmpty()) {
+      return;
+    }
+    getLog().info("Upload summary:");
+    results.forEach(
+        (tgz, result) -> {
+          if (result.isSkipped()) {
+            getLog().info(format("  %s: unchanged, upload skipped", tgz));
+            return;
+          }
+          getLog()
+              .info(
+                  format(
+                      "  %s: %d bytes in %d ms (%d attempt%s)",
+                      tgz,
+                      result.getBytes(),
+                      result.getMillis(),
+                      result.getAttempts(),
+                      result.getAttempts() == 1 ? EMPTY : "s"));
+        });
+    getLog()
+        .info(
+            format(
+                "  total: %d charts, %d bytes, %d unchanged",
+                results.size(),
+                results.values().stream().mapToLong(PushResult::getBytes).sum(),
+                results.values().stream().filter(PushResult::isSkipped).count()));
   }
 
-  private void uploadSingle(Path tgz, HelmRepository registry) throws MojoExecutionException {
+  private void uploadSingle(Path tgz, String reference) throws MojoExecutionException {
 
     callCli(
         getHelmCommand(
             "chart save",
-            format(
-                CHART_SAVE_PUSH_TEMPLATE,
-                tgz.toAbsolutePath().toString(),
-                registry.getUrl(),
-                getReleaseName(),
-                getChartVersion())),
+            format(CHART_SAVE_PUSH_TEMPLATE, tgz.toAbsolutePath().toString(), reference)),
         "Unable to save the chart at " + tgz.toAbsolutePath().toString());
 
     callCli(
-        getHelmCommand(
-            "chart push",
-            format(
-                CHART_SAVE_PUSH_TEMPLATE,
-                EMPTY,
-                registry.getUrl(),
-                getReleaseName(),
-                getChartVersion())),
-        "Unable to push the chart at " + registry.getUrl());
+        getHelmCommand("chart push", format(CHART_SAVE_PUSH_TEMPLATE, EMPTY, reference)),
+        "Unable to push the chart to " + reference);
+  }
+
+  @Value
+  private static class PushResult {
+
+    long bytes;
+    long millis;
+    int attempts;
+    boolean skipped;
   }
 }
@@ -1,22 +1,188 @@
 package com.kbakhtiari.helm.maven.plugin;
 
+import com.kbakhtiari.helm.maven.plugin.pojo.ValueOverride;
+import com.kbakhtiari.helm.maven.plugin.utils.HashUtils;
+import com.kbakhtiari.helm.maven.plugin.utils.ManifestCache;
+import com.kbakhtiari.helm.maven.plugin.utils.ManifestIndex;
+import com.kbakhtiari.helm.maven.plugin.utils.ManifestSplitter;
+import com.kbakhtiari.helm.maven.plugin.utils.PackageUtils;
 import lombok.Data;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.kbakhtiari.helm.maven.plugin.utils.JavaUtils.asMap;
+import static com.kbakhtiari.helm.maven.plugin.utils.PackageUtils.toMap;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+/**
+ * Renders the charts, concurrently with up to helm.threads workers. The manifests of every chart
+ * are written by helm straight into a file below the template output directory, named after the
+ * chart directory relative to the chart directory of the build, so later steps can use them without
+ * rendering again. Charts rendered before with the same inputs are served from a manifest cache.
+ * The manifests may also be split into one file per resource, see {@link ManifestSplitter}.
+ */
 @Data
 @Mojo(name = "template", defaultPhase = LifecyclePhase.VERIFY)
 public class TemplateMojo extends AbstractHelmMojo {
 
+  /** Directory the rendered manifests of the charts are written to. */
+  @Parameter(
+      property = "helm.template.outputDirectory",
+      defaultValue = "${project.build.directory}/helm/templates")
+  private String templateOutputDirectory;
+
+  /** Kubernetes version the capabilities of the rendering report, passed as --kube-version. */
+  @Parameter(property = "helm.template.kubeVersion")
+  private String kubeVersion;
+
+  /**
+   * Serve the manifests of a chart from the manifest cache when the chart, the values, the command
+   * line and the helm executable are the same as when they were last rendered.
+   */
+  @Parameter(property = "helm.template.cache", defaultValue = "true")
+  private boolean cacheManifests;
+
+  /** Directory of the manifest cache shared by all builds. */
+  @Parameter(
+      property = "helm.template.cacheDirectory",
+      defaultValue = "${settings.localRepository}/com/kbakhtiari/helm-maven-plugin/manifests")
+  private String manifestCacheDirectory;
+
+  /** Megabytes the manifest cache may take, the least recently used entries are evicted beyond. */
+  @Parameter(property = "helm.template.cacheMaxSize", defaultValue = "256")
+  private int manifestCacheMaxSize;
+
+  /**
+   * Split the manifests of every chart into one file per resource, indexed by kind, namespace and
+   * name, in a directory next to the manifests.
+   */
+  @Parameter(property = "helm.template.split", defaultValue = "false")
+  private boolean splitManifests;
+
   public void execute() throws MojoExecutionException, MojoFailureException {
 
-    for (String inputDirectory : getChartDirectories(getChartDirectory())) {
+    final ManifestCache cache =
+        cacheManifests
+            ? new ManifestCache(
+                Paths.get(manifestCacheDirectory), manifestCacheMaxSize * 1024L * 1024L, getLog())
+            : null;
+    forEachChart(
+        getChartDirectories(getChartDirectory()), inputDirectory -> render(inputDirectory, cache));
+
+    if (cache != null) {
+      try {
+        cache.evict();
+      } catch (IOException e) {
+        getLog().warn("Unable to evict from the manifest cache: " + e.getMessage());
+      }
+      getLog().info(cache.getStatistics());
+    }
+  }
+
+  private void render(String inputDirectory, ManifestCache cache) throws MojoExecutionException {
 
-      getLog().info("templating the chart " + inputDirectory);
+    getLog().info("templating the chart " + inputDirectory);
 
-      callCli(getCommand("template", inputDirectory), "There are test failures");
+    final Path manifest = getManifestFile(inputDirectory);
+    final Path temporary = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+    final String command =
+        getCommand(
+            "template",
+            isNotEmpty(kubeVersion) ? "--kube-version " + kubeVersion : EMPTY,
+            inputDirectory);
+    try {
+      final String key = cache == null ? null : getCacheKey(inputDirectory, command);
+      if (key != null && cache.get(key, manifest)) {
+        getLog()
+            .info(
+                format(
+                    "the chart %s is unchanged, took %s from the cache", inputDirectory, manifest));
+      } else {
+        Files.createDirectories(manifest.getParent());
+        callCli(command, "There are test failures", temporary);
+        Files.move(temporary, manifest, StandardCopyOption.REPLACE_EXISTING);
+        if (key != null) {
+          cache.put(key, manifest);
+        }
+        getLog().info(format("rendered the chart %s to %s", inputDirectory, manifest));
+      }
+      if (splitManifests) {
+        final Path resources = getResourceDirectory(manifest);
+        final ManifestIndex index = ManifestSplitter.split(manifest, resources);
+        getLog()
+            .info(
+                format(
+                    "split %d resources of %s into %s",
+                    index.getResources().size(), manifest, resources));
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to write the manifests to " + manifest, e);
+    } finally {
+      try {
+        Files.deleteIfExists(temporary);
+      } catch (IOException e) {
+        getLog().debug(format("Unable to delete %s: %s", temporary, e.getMessage()));
+      }
     }
   }
+
+  /**
+   * the fingerprint of everything the rendering depends on: the chart, the command line with the
+   * values options, the content of the values files and the helm executable.
+   */
+  private String getCacheKey(String inputDirectory, String command)
+      throws IOException, MojoExecutionException {
+
+    final List<String> inputs = new ArrayList<>();
+    inputs.add(command);
+    inputs.addAll(getHelmIdentity());
+    final ValueOverride values = getValues();
+    final List<String> valuesFiles = new ArrayList<>();
+    if (values != null && isNotEmpty(values.getYamlFile())) {
+      valuesFiles.add(values.getYamlFile());
+    }
+    if (values != null && isNotEmpty(values.getFileOverrides())) {
+      final Map<String, ?> fileOverrides =
+          PackageUtils.flattenOverrides(asMap(toMap(values.getFileOverrides())));
+      fileOverrides.values().forEach(file -> valuesFiles.add(String.valueOf(file)));
+    }
+    for (String file : valuesFiles) {
+      final Path path = Paths.get(file);
+      inputs.add(Files.isRegularFile(path) ? file + "=" + HashUtils.sha256Hex(path) : file);
+    }
+    return ManifestCache.key(Paths.get(inputDirectory), inputs.toArray(new String[0]));
+  }
+
+  /** the file the manifests of the chart are written to. */
+  Path getManifestFile(String inputDirectory) {
+
+    final Path chart = Paths.get(inputDirectory).toAbsolutePath().normalize();
+    Path relative = Paths.get(getChartDirectory()).toAbsolutePath().normalize().relativize(chart);
+    if (relative.toString().isEmpty() || relative.startsWith("..")) {
+      relative = chart.getFileName();
+    }
+    return Paths.get(templateOutputDirectory).resolve(relative + ".yaml");
+  }
+
+  /** the directory the resources of the manifests are split into. */
+  static Path getResourceDirectory(Path manifest) {
+
+    final String name = manifest.getFileName().toString();
+    return manifest.resolveSibling(
+        name.substring(0, name.length() - ".yaml".length()) + "-resources");
+  }
 }
@@ -1,5 +1,6 @@
 package com.kbakhtiari.helm.maven.plugin;
 
+import com.kbakhtiari.helm.maven.plugin.utils.ChartDependencyGraph;
 import lombok.Data;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -7,9 +8,12 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.util.List;
+
 import static com.kbakhtiari.helm.maven.plugin.utils.Constants.MojoDefaultConstants.FALSE;
 import static com.kbakhtiari.helm.maven.plugin.utils.Constants.MojoDefaultConstants.TRUE;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
 @Data
 @Mojo(name = "upgrade", defaultPhase = LifecyclePhase.DEPLOY)
@@ -21,21 +25,42 @@ public class UpgradeMojo extends AbstractHelmMojo {
   @Parameter(property = "helm.upgrade.upgradeWithInstall", defaultValue = TRUE)
   private boolean upgradeWithInstall;
 
-  public void execute() throws MojoExecutionException, MojoFailureException {
+  /**
+   * Number of releases upgraded concurrently when every chart is its own release. Upgrades change
+   * the cluster, so unlike the local goals they don't follow helm.threads and run one after the
+   * other unless raised here. Zero or less means the number of available processors.
+   */
+  @Parameter(property = "helm.upgrade.threads", defaultValue = "1")
+  private int upgradeThreads;
 
-    for (String inputDirectory : getChartDirectories(getChartDirectory())) {
+  public void execute() throws MojoExecutionException, MojoFailureException {
 
-      getLog()
-          .info(
-              new StringBuilder()
-                  .append("installing the chart ")
-                  .append(upgradeWithInstall ? "with install " : EMPTY)
-                  .append(inputDirectory)
-                  .toString());
+    final List<String> chartDirectories = getChartDirectories(getChartDirectory());
 
-      callCli(
-          getCommand("upgrade " + (upgradeWithInstall ? " --install" : EMPTY), inputDirectory),
-          "Error happened during upgrading the chart");
+    if (isNotEmpty(getReleaseName())) {
+      // all the charts are installed as the same release, so they cannot be upgraded concurrently
+      for (List<String> level : ChartDependencyGraph.getLevels(chartDirectories)) {
+        for (String inputDirectory : level) {
+          upgrade(inputDirectory);
+        }
+      }
+    } else {
+      forEachChartInDependencyOrder(chartDirectories, upgradeThreads, this::upgrade);
     }
   }
+
+  private void upgrade(String inputDirectory) throws MojoExecutionException {
+
+    getLog()
+        .info(
+            new StringBuilder()
+                .append("installing the chart ")
+                .append(upgradeWithInstall ? "with install " : EMPTY)
+                .append(inputDirectory)
+                .toString());
+
+    callCli(
+        getCommand("upgrade " + (upgradeWithInstall ? " --install" : EMPTY), inputDirectory),
+        "Error happened during upgrading the chart");
+  }
 }
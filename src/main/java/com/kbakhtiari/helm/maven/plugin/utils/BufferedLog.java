@@ -0,0 +1,121 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Log} that keeps every message in memory until {@link #flush()} is called, so the output
+ * of a single chart is not interleaved with the output of the charts processed concurrently. The
+ * messages of the levels the target log has disabled are dropped instead of buffered.
+ */
+@RequiredArgsConstructor
+public class BufferedLog implements Log {
+
+  private final Log target;
+  private final List<Runnable> entries = new ArrayList<>();
+
+  /** replays all the buffered messages on the target log as one uninterrupted block. */
+  public void flush() {
+
+    synchronized (target) {
+      synchronized (entries) {
+        entries.forEach(Runnable::run);
+        entries.clear();
+      }
+    }
+  }
+
+  /** buffers the message, or drops it right away when its level is disabled on the target. */
+  private void add(boolean enabled, Runnable entry) {
+
+    if (!enabled) {
+      return;
+    }
+    synchronized (entries) {
+      entries.add(entry);
+    }
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return target.isDebugEnabled();
+  }
+
+  @Override
+  public void debug(CharSequence content) {
+    add(target.isDebugEnabled(), () -> target.debug(content));
+  }
+
+  @Override
+  public void debug(CharSequence content, Throwable error) {
+    add(target.isDebugEnabled(), () -> target.debug(content, error));
+  }
+
+  @Override
+  public void debug(Throwable error) {
+    add(target.isDebugEnabled(), () -> target.debug(error));
+  }
+
+  @Override
+  public boolean isInfoEnabled() {
+    return target.isInfoEnabled();
+  }
+
+  @Override
+  public void info(CharSequence content) {
+    add(target.isInfoEnabled(), () -> target.info(content));
+  }
+
+  @Override
+  public void info(CharSequence content, Throwable error) {
+    add(target.isInfoEnabled(), () -> target.info(content, error));
+  }
+
+  @Override
+  public void info(Throwable error) {
+    add(target.isInfoEnabled(), () -> target.info(error));
+  }
+
+  @Override
+  public boolean isWarnEnabled() {
+    return target.isWarnEnabled();
+  }
+
+  @Override
+  public void warn(CharSequence content) {
+    add(target.isWarnEnabled(), () -> target.warn(content));
+  }
+
+  @Override
+  public void warn(CharSequence content, Throwable error) {
+    add(target.isWarnEnabled(), () -> target.warn(content, error));
+  }
+
+  @Override
+  public void warn(Throwable error) {
+    add(target.isWarnEnabled(), () -> target.warn(error));
+  }
+
+  @Override
+  public boolean isErrorEnabled() {
+    return target.isErrorEnabled();
+  }
+
+  @Override
+  public void error(CharSequence content) {
+    add(target.isErrorEnabled(), () -> target.error(content));
+  }
+
+  @Override
+  public void error(CharSequence content, Throwable error) {
+    add(target.isErrorEnabled(), () -> target.error(content, error));
+  }
+
+  @Override
+  public void error(Throwable error) {
+    add(target.isErrorEnabled(), () -> target.error(error));
+  }
+}
@@ -0,0 +1,116 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Orders chart directories by the local (<code>file://</code>) dependencies declared in their
+ * Chart.yaml, or requirements.yaml for apiVersion v1 charts. A chart also depends on the charts
+ * nested in its directory, like <code>charts/sub</code>, since processing it reads their files.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ChartDependencyGraph {
+
+  private static final String FILE_REPOSITORY_PREFIX = "file://";
+  private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+
+  /**
+   * groups the given chart directories into levels. every chart only depends on charts of the
+   * previous levels, so the charts of one level can be processed concurrently.
+   */
+  public static List<List<String>> getLevels(List<String> chartDirectories)
+      throws MojoExecutionException {
+
+    final Map<Path, String> chartsByPath = new LinkedHashMap<>();
+    chartDirectories.forEach(
+        directory ->
+            chartsByPath.put(Paths.get(directory).toAbsolutePath().normalize(), directory));
+
+    final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+    for (Map.Entry<Path, String> chart : chartsByPath.entrySet()) {
+      final Set<String> localDependencies = new LinkedHashSet<>();
+      for (Path dependency : getLocalDependencies(chart.getKey())) {
+        final String dependencyDirectory = chartsByPath.get(dependency);
+        if (dependencyDirectory != null && !dependencyDirectory.equals(chart.getValue())) {
+          localDependencies.add(dependencyDirectory);
+        }
+      }
+      for (Map.Entry<Path, String> nested : chartsByPath.entrySet()) {
+        if (!nested.getKey().equals(chart.getKey()) && nested.getKey().startsWith(chart.getKey())) {
+          localDependencies.add(nested.getValue());
+        }
+      }
+      dependencies.put(chart.getValue(), localDependencies);
+    }
+
+    final List<List<String>> levels = new ArrayList<>();
+    final Set<String> scheduled = new LinkedHashSet<>();
+    while (scheduled.size() < dependencies.size()) {
+      final List<String> level =
+          dependencies.entrySet().stream()
+              .filter(chart -> !scheduled.contains(chart.getKey()))
+              .filter(chart -> scheduled.containsAll(chart.getValue()))
+              .map(Map.Entry::getKey)
+              .collect(toList());
+      if (level.isEmpty()) {
+        throw new MojoExecutionException(
+            format(
+                "Cyclic dependencies between the charts %s",
+                dependencies.keySet().stream()
+                    .filter(chart -> !scheduled.contains(chart))
+                    .collect(toList())));
+      }
+      scheduled.addAll(level);
+      levels.add(level);
+    }
+    return levels;
+  }
+
+  /** the directories of the local (file://) dependencies declared by the chart. */
+  public static List<Path> getLocalDependencies(Path chartDirectory) throws MojoExecutionException {
+
+    final List<Path> localDependencies = new ArrayList<>();
+    for (String descriptor : new String[] {"Chart.yaml", "requirements.yaml"}) {
+      final Path path = chartDirectory.resolve(descriptor);
+      if (!Files.exists(path)) {
+        continue;
+      }
+      try {
+        final JsonNode root = MAPPER.readTree(path.toFile());
+        if (root == null || !root.path("dependencies").isArray()) {
+          continue;
+        }
+        for (JsonNode dependency : root.path("dependencies")) {
+          final String repository = dependency.path("repository").asText();
+          if (repository.startsWith(FILE_REPOSITORY_PREFIX)) {
+            localDependencies.add(
+                chartDirectory
+                    .resolve(repository.substring(FILE_REPOSITORY_PREFIX.length()))
+                    .normalize());
+          }
+        }
+      } catch (IOException e) {
+        throw new MojoExecutionException("Unable to read the chart dependencies from " + path, e);
+      }
+    }
+    return localDependencies;
+  }
+}
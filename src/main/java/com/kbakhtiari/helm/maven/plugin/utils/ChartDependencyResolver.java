@@ -0,0 +1,401 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.kbakhtiari.helm.maven.plugin.pojo.HelmRepository;
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static com.kbakhtiari.helm.maven.plugin.utils.ChartPackager.CHART_FILE;
+import static com.kbakhtiari.helm.maven.plugin.utils.JavaUtils.asMap;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+/**
+ * Builds the charts directory of a chart from the dependencies in its Chart.yaml and the versions
+ * pinned in its Chart.lock (requirements.yaml and requirements.lock for apiVersion v1 charts), the
+ * way <code>helm dependency build</code> does, but without forking helm per chart. The index of
+ * every repository is refreshed and read once, every archive is downloaded once into a {@link
+ * ChartStore} and then placed into all the charts depending on it. Local (<code>file://</code>)
+ * dependencies are packaged into the store once as well. Charts depending on something only helm
+ * can resolve, like an oci registry or a repository which isn't configured, are left to helm.
+ */
+@Builder
+public class ChartDependencyResolver {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+  private static final String FILE_REPOSITORY_PREFIX = "file://";
+  private static final String CHARTS_DIRECTORY = "charts";
+  private static final String DEPENDENCIES = "dependencies";
+
+  private final ChartStore store;
+  private final RepositoryIndexCache indexCache;
+  /** the repositories of the repository config. */
+  private final List<HelmRepository> repositories;
+
+  private final ChartPackager packager;
+  private final Executor executor;
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final int retries;
+  private final long backoff;
+
+  private final ConcurrentMap<String, CompletableFuture<ChartRepositoryIndex>> indexes =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CompletableFuture<String>> downloads =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<Path, CompletableFuture<Stored>> packages = new ConcurrentHashMap<>();
+  private final AtomicInteger downloaded = new AtomicInteger();
+  private final AtomicInteger reused = new AtomicInteger();
+
+  /**
+   * builds the dependencies of the chart, logging to the log of the chart. returns false, without
+   * touching the chart, when one of them can only be resolved by helm.
+   */
+  public boolean build(Path chartDirectory, Log log) throws IOException, MojoExecutionException {
+
+    final Map<String, Object> chart = read(chartDirectory.resolve(CHART_FILE));
+    final boolean v1 = "v1".equals(chart.get("apiVersion"));
+    final List<Map<String, Object>> dependencies =
+        getDependencies(v1 ? read(chartDirectory.resolve("requirements.yaml")) : chart);
+    if (dependencies.isEmpty()) {
+      return true;
+    }
+    final Path lockFile = chartDirectory.resolve(v1 ? "requirements.lock" : "Chart.lock");
+    final Map<String, Map<String, Object>> locked =
+        Files.exists(lockFile) ? byName(getDependencies(read(lockFile))) : null;
+
+    final List<Dependency> resolved = new ArrayList<>();
+    for (Map<String, Object> dependency : dependencies) {
+      final String name = toString(dependency.get("name"));
+      final String repository = toString(dependency.get("repository"));
+      if (repository.startsWith(FILE_REPOSITORY_PREFIX)) {
+        resolved.add(
+            new Dependency(
+                name,
+                pack(
+                    chartDirectory
+                        .resolve(repository.substring(FILE_REPOSITORY_PREFIX.length()))
+                        .toAbsolutePath()
+                        .normalize())));
+        continue;
+      }
+      final HelmRepository helmRepository = findRepository(repository);
+      if (helmRepository == null) {
+        log.info(
+            format(
+                "Dependency %s of %s is left to helm, its repository '%s' isn't configured",
+                name, chartDirectory, repository));
+        return false;
+      }
+      final Map<String, Object> lock = locked == null ? null : locked.get(name);
+      if (locked != null
+          && (lock == null
+              || !repository.equals(toString(lock.get("repository")))
+              || !satisfies(toString(lock.get("version")), dependency))) {
+        throw new MojoExecutionException(
+            format(
+                "%s of %s is out of sync with its dependencies, run helm dependency update",
+                lockFile.getFileName(), chartDirectory));
+      }
+      resolved.add(fetch(helmRepository, dependency, lock, chartDirectory.toString(), log));
+    }
+
+    final Map<Dependency, Stored> archives = new LinkedHashMap<>();
+    for (Dependency dependency : resolved) {
+      archives.put(dependency, join(dependency.archive));
+    }
+    final Path chartsDirectory = chartDirectory.resolve(CHARTS_DIRECTORY);
+    for (Dependency dependency : resolved) {
+      removeArchives(chartsDirectory, dependency.name);
+    }
+    for (Map.Entry<Dependency, Stored> archive : archives.entrySet()) {
+      store.materialize(
+          archive.getValue().sha256, chartsDirectory.resolve(archive.getValue().fileName));
+    }
+    log.debug(format("placed %d archives into %s", archives.size(), chartsDirectory));
+    return true;
+  }
+
+  /** number of archives downloaded. */
+  public int getDownloaded() {
+
+    return downloaded.get();
+  }
+
+  /** number of dependencies taken from the store without a download. */
+  public int getReused() {
+
+    return reused.get();
+  }
+
+  private Dependency fetch(
+      HelmRepository repository,
+      Map<String, Object> dependency,
+      Map<String, Object> lock,
+      String chartDirectory,
+      Log log)
+      throws IOException, MojoExecutionException {
+
+    final String name = toString(dependency.get("name"));
+    final ChartRepositoryIndex index =
+        join(
+            indexes.computeIfAbsent(
+                repository.getName(),
+                key ->
+                    CompletableFuture.supplyAsync(
+                        () -> {
+                          try {
+                            return ChartRepositoryIndex.load(indexCache.refresh(repository));
+                          } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                          }
+                        },
+                        executor)));
+
+    final String version =
+        lock != null
+            ? toString(lock.get("version"))
+            : index.findHighest(name, parseConstraint(dependency));
+    final String url = version == null ? null : index.getUrl(name, version);
+    if (url == null) {
+      throw new MojoExecutionException(
+          format(
+              "Can't get a valid version for dependency %s %s of %s from repository %s",
+              name, dependency.get("version"), chartDirectory, repository.getName()));
+    }
+    final String digest = index.getDigest(name, version);
+    if (isEmpty(digest)) {
+      log.warn(
+          format(
+              "Repository %s has no digest for %s %s, its download is not verified",
+              repository.getName(), name, version));
+    }
+
+    final String fileName = format("%s-%s.tgz", name, version);
+    final CompletableFuture<String> archive;
+    if (store.get(digest) != null) {
+      reused.incrementAndGet();
+      archive = CompletableFuture.completedFuture(digest);
+    } else {
+      final String location = resolve(repository.getUrl(), url);
+      archive =
+          downloads.computeIfAbsent(
+              location,
+              key ->
+                  CompletableFuture.supplyAsync(
+                      () -> {
+                        try {
+                          return download(repository, location, digest, fileName, log);
+                        } catch (IOException e) {
+                          throw new UncheckedIOException(e);
+                        }
+                      },
+                      executor));
+    }
+    return new Dependency(name, archive.thenApply(sha256 -> new Stored(fileName, sha256)));
+  }
+
+  /** packages a local dependency into the store, once per chart directory. */
+  private CompletableFuture<Stored> pack(Path localChart) {
+
+    return packages.computeIfAbsent(
+        localChart,
+        key ->
+            CompletableFuture.supplyAsync(
+                () -> {
+                  Path directory = null;
+                  try {
+                    directory = store.createTempDirectory(localChart.getFileName().toString());
+                    final Path archive = packager.pack(localChart, directory, null, null);
+                    return new Stored(archive.getFileName().toString(), store.add(archive));
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  } catch (MojoExecutionException e) {
+                    throw new CompletionException(e);
+                  } finally {
+                    if (directory != null) {
+                      FileUtils.deleteQuietly(directory.toFile());
+                    }
+                  }
+                },
+                executor));
+  }
+
+  private String download(
+      HelmRepository repository, String url, String digest, String fileName, Log log)
+      throws IOException {
+
+    log.info(format("Downloading %s", url));
+    final Path temporary = store.createTempFile(fileName);
+    try {
+      HelmDownloader.builder()
+          .log(log)
+          .connectTimeout(connectTimeout)
+          .readTimeout(readTimeout)
+          .retries(retries)
+          .backoff(backoff)
+          .username(repository.getUsername())
+          .password(repository.getPassword())
+          .build()
+          .download(url, digest, temporary);
+      downloaded.incrementAndGet();
+      return store.add(temporary);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private HelmRepository findRepository(String repository) {
+
+    if (repository.isEmpty() || repository.startsWith("oci://") || repositories == null) {
+      return null;
+    }
+    final String name =
+        repository.startsWith("@")
+            ? repository.substring(1)
+            : repository.startsWith("alias:") ? repository.substring("alias:".length()) : null;
+    for (HelmRepository candidate : repositories) {
+      if (name != null
+          ? name.equals(candidate.getName())
+          : trimSlashes(repository).equals(trimSlashes(candidate.getUrl()))) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  private static String resolve(String repositoryUrl, String url) throws IOException {
+
+    try {
+      return new URI(trimSlashes(repositoryUrl) + "/").resolve(url).toString();
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      throw new IOException("Invalid chart url " + url, e);
+    }
+  }
+
+  private static boolean satisfies(String version, Map<String, Object> dependency)
+      throws MojoExecutionException {
+
+    final ChartVersion parsed = ChartVersion.tryParse(version);
+    return parsed != null && parseConstraint(dependency).test(parsed);
+  }
+
+  private static VersionConstraint parseConstraint(Map<String, Object> dependency)
+      throws MojoExecutionException {
+
+    try {
+      return VersionConstraint.parse(toString(dependency.get("version")));
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException(
+          format("Dependency %s: %s", dependency.get("name"), e.getMessage()), e);
+    }
+  }
+
+  /** removes the archives of any version of the dependency, like helm does before placing it. */
+  public static void removeArchives(Path chartsDirectory, String name) throws IOException {
+
+    if (!Files.isDirectory(chartsDirectory)) {
+      return;
+    }
+    final Pattern archive = Pattern.compile(Pattern.quote(name) + "-v?[0-9][^/]*\\.tgz");
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(chartsDirectory)) {
+      for (Path entry : entries) {
+        if (archive.matcher(entry.getFileName().toString()).matches()) {
+          Files.delete(entry);
+        }
+      }
+    }
+  }
+
+  private static Map<String, Object> read(Path file) throws IOException {
+
+    if (!Files.exists(file)) {
+      return Collections.emptyMap();
+    }
+    final Map<String, Object> content = asMap(MAPPER.readValue(file.toFile(), Map.class));
+    return content == null ? Collections.emptyMap() : content;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Map<String, Object>> getDependencies(Map<String, Object> content) {
+
+    final Object dependencies = content.get(DEPENDENCIES);
+    return dependencies instanceof List
+        ? (List<Map<String, Object>>) dependencies
+        : Collections.emptyList();
+  }
+
+  private static Map<String, Map<String, Object>> byName(List<Map<String, Object>> dependencies) {
+
+    final Map<String, Map<String, Object>> byName = new LinkedHashMap<>();
+    dependencies.forEach(dependency -> byName.put(toString(dependency.get("name")), dependency));
+    return byName;
+  }
+
+  private static String toString(Object value) {
+
+    return Objects.toString(value, EMPTY).trim();
+  }
+
+  private static String trimSlashes(String url) {
+
+    return url.replaceAll("/+$", EMPTY);
+  }
+
+  private static <T> T join(CompletableFuture<T> future)
+      throws IOException, MojoExecutionException {
+
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      if (e.getCause() instanceof MojoExecutionException) {
+        throw (MojoExecutionException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class Dependency {
+
+    private final String name;
+    private final CompletableFuture<Stored> archive;
+  }
+
+  /** an archive in the store and the name it is placed into the charts directory with. */
+  @RequiredArgsConstructor
+  private static class Stored {
+
+    private final String fileName;
+    private final String sha256;
+  }
+}
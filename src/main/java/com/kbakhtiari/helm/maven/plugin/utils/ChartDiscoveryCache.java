@@ -0,0 +1,81 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.SessionData;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the charts discovered below a directory for the rest of the build, in the data of the maven
+ * session, so the goals of all the modules share a single scan. A result is reused only as long as
+ * none of the directories it was scanned from nor any of the chart files found changed since.
+ */
+@RequiredArgsConstructor
+public class ChartDiscoveryCache {
+
+  /** the class itself, so plugin versions loaded by different class realms don't share entries. */
+  private static final Object DATA_KEY = ChartDiscoveryCache.class;
+
+  private final SessionData data;
+  private final Log log;
+
+  /**
+   * returns the charts discovered under the given key, or scans them with the given scanner when
+   * there are none or they are outdated.
+   */
+  public List<String> get(String key, ChartScanner scanner, Path root) throws IOException {
+
+    final ConcurrentMap<String, Entry> entries = getEntries();
+    final Entry cached = entries.get(key);
+    if (cached != null && cached.isValid()) {
+      log.debug("Reusing the charts discovered earlier in this build below " + root);
+      return new ArrayList<>(cached.charts);
+    }
+
+    final List<String> charts = scanner.scan(root);
+    entries.put(key, new Entry(new ArrayList<>(charts), new HashMap<>(scanner.getStamps())));
+    return charts;
+  }
+
+  @SuppressWarnings("unchecked")
+  private ConcurrentMap<String, Entry> getEntries() {
+
+    ConcurrentMap<String, Entry> entries;
+    while ((entries = (ConcurrentMap<String, Entry>) data.get(DATA_KEY)) == null) {
+      data.set(DATA_KEY, null, new ConcurrentHashMap<String, Entry>());
+    }
+    return entries;
+  }
+
+  @RequiredArgsConstructor
+  private static class Entry {
+
+    private final List<String> charts;
+    private final Map<Path, FileTime> stamps;
+
+    private boolean isValid() throws IOException {
+
+      for (Map.Entry<Path, FileTime> stamp : stamps.entrySet()) {
+        try {
+          if (!Files.getLastModifiedTime(stamp.getKey()).equals(stamp.getValue())) {
+            return false;
+          }
+        } catch (NoSuchFileException e) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
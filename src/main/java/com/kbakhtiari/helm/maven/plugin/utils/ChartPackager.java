@@ -0,0 +1,368 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
+import lombok.Builder;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+/**
+ * Packages a chart directory into a chart archive the way <code>helm package</code> does, without
+ * forking helm: the files not excluded by <code>.helmignore</code> are stored below a directory
+ * named after the chart, in the order helm writes them, with Chart.yaml written first and its
+ * version and appVersion overridden in its text when requested. The archive is compressed with a
+ * {@link ParallelGzipOutputStream}.
+ *
+ * <p>In reproducible mode every entry gets the same timestamp, so equal inputs result in byte for
+ * byte equal archives; {@link #normalize(Path)} does the same to an archive written by helm.
+ */
+@Builder
+public class ChartPackager {
+
+  public static final String CHART_FILE = "Chart.yaml";
+
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper(
+              new YAMLFactory()
+                  .disable(YAMLGenerator.Feature.WRITE_DOC_START_MARKER)
+                  .enable(YAMLGenerator.Feature.MINIMIZE_QUOTES)
+                  .enable(YAMLGenerator.Feature.ALWAYS_QUOTE_NUMBERS_AS_STRINGS))
+          .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+  private static final int FILE_MODE = 0100644;
+  private static final long REPRODUCIBLE_MOD_TIME = 0;
+
+  private final Log log;
+  private final Executor executor;
+  private final boolean reproducible;
+
+  /** packages the chart and returns the path of the archive written to the output directory. */
+  public Path pack(Path chartDirectory, Path outputDirectory, String version, String appVersion)
+      throws IOException, MojoExecutionException {
+
+    final Path chartPath = chartDirectory.resolve(CHART_FILE);
+    if (!Files.exists(chartPath)) {
+      throw new MojoExecutionException("No " + CHART_FILE + " found in " + chartDirectory);
+    }
+    final byte[] content = Files.readAllBytes(chartPath);
+    final Map<String, Object> chart = readChart(content, chartPath);
+    final Map<String, String> overrides = new LinkedHashMap<>();
+    if (isNotEmpty(version)) {
+      overrides.put("version", version);
+    }
+    if (isNotEmpty(appVersion)) {
+      overrides.put("appVersion", appVersion);
+    }
+    chart.putAll(overrides);
+    final String name = String.valueOf(chart.get("name"));
+    final byte[] chartFile = overrides.isEmpty() ? content : writeChart(content, chart, overrides);
+
+    final List<String> files = listFiles(chartDirectory, HelmIgnore.load(chartDirectory));
+    files.remove(CHART_FILE);
+    files.sort(
+        Comparator.comparingInt(ChartPackager::rank).thenComparing(Comparator.naturalOrder()));
+
+    Files.createDirectories(outputDirectory);
+    final Path archive = outputDirectory.resolve(format("%s-%s.tgz", name, chart.get("version")));
+    final Path temporary =
+        Files.createTempFile(outputDirectory, archive.getFileName().toString(), ".tmp");
+    final long modTime = reproducible ? REPRODUCIBLE_MOD_TIME : System.currentTimeMillis();
+    try {
+      try (TarArchiveOutputStream tar = newArchive(temporary)) {
+        tar.putArchiveEntry(newEntry(name + "/" + CHART_FILE, chartFile.length, modTime));
+        tar.write(chartFile);
+        tar.closeArchiveEntry();
+
+        for (String file : files) {
+          final Path path = chartDirectory.resolve(file);
+          tar.putArchiveEntry(newEntry(name + "/" + file, Files.size(path), modTime));
+          try (InputStream is = Files.newInputStream(path)) {
+            IOUtils.copy(is, tar);
+          }
+          tar.closeArchiveEntry();
+        }
+      }
+      Files.move(temporary, archive, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+
+    log.debug(format("packaged %d files of %s into %s", files.size() + 1, chartDirectory, archive));
+    return archive;
+  }
+
+  /**
+   * rewrites a chart archive with the entries in their original order, but with the timestamps,
+   * permissions and owners of a reproducible archive written by this packager.
+   */
+  public void normalize(Path archive) throws IOException {
+
+    final Path temporary =
+        Files.createTempFile(archive.getParent(), archive.getFileName().toString(), ".tmp");
+    try {
+      try (TarArchiveInputStream in =
+              new TarArchiveInputStream(
+                  new GzipCompressorInputStream(
+                      new BufferedInputStream(Files.newInputStream(archive)), true));
+          TarArchiveOutputStream out = newArchive(temporary)) {
+        TarArchiveEntry entry;
+        while ((entry = in.getNextTarEntry()) != null) {
+          if (!entry.isFile()) {
+            log.debug(format("leaving out %s from %s", entry.getName(), archive));
+            continue;
+          }
+          out.putArchiveEntry(newEntry(entry.getName(), entry.getSize(), REPRODUCIBLE_MOD_TIME));
+          IOUtils.copy(in, out);
+          out.closeArchiveEntry();
+        }
+      }
+      Files.move(temporary, archive, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private TarArchiveOutputStream newArchive(Path file) throws IOException {
+
+    final TarArchiveOutputStream tar =
+        new TarArchiveOutputStream(
+            new ParallelGzipOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)), executor));
+    tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+    tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+    return tar;
+  }
+
+  /**
+   * reads the Chart.yaml with every scalar as the text the author wrote, like <code>1.10</code> or
+   * <code>no</code>, the way helm reads them into the string fields of the chart metadata.
+   */
+  private static Map<String, Object> readChart(byte[] content, Path file)
+      throws MojoExecutionException {
+
+    final Object chart;
+    try {
+      chart =
+          new Yaml(
+                  new SafeConstructor(),
+                  new Representer(),
+                  new DumperOptions(),
+                  new Resolver() {
+                    @Override
+                    protected void addImplicitResolvers() {}
+                  })
+              .load(new String(content, StandardCharsets.UTF_8));
+    } catch (YAMLException e) {
+      throw new MojoExecutionException("Unable to read " + file + ": " + e.getMessage(), e);
+    }
+    if (!(chart instanceof Map) || ((Map<?, ?>) chart).get("name") == null) {
+      throw new MojoExecutionException("The chart name is missing in " + file);
+    }
+    if (((Map<?, ?>) chart).get("version") == null) {
+      throw new MojoExecutionException("The chart version is missing in " + file);
+    }
+    @SuppressWarnings("unchecked")
+    final Map<String, Object> map = (Map<String, Object>) chart;
+    return map;
+  }
+
+  /**
+   * the Chart.yaml with the overridden fields replaced in its text, so everything else keeps the
+   * text the author wrote. Charts the text can't be safely edited in are written anew.
+   */
+  private static byte[] writeChart(
+      byte[] content, Map<String, Object> chart, Map<String, String> overrides) throws IOException {
+
+    final String text = new String(content, StandardCharsets.UTF_8);
+    final String patched =
+        text.length() == text.codePointCount(0, text.length())
+            ? replaceScalars(text, overrides)
+            : null;
+    return patched != null
+        ? patched.getBytes(StandardCharsets.UTF_8)
+        : MAPPER.writeValueAsBytes(chart);
+  }
+
+  /**
+   * replaces the values of the top level scalars in the text and appends the missing ones, or
+   * returns null when the document isn't a plain block mapping of such scalars.
+   */
+  private static String replaceScalars(String text, Map<String, String> overrides)
+      throws IOException {
+
+    final List<Event> events = new ArrayList<>();
+    try {
+      new Yaml().parse(new StringReader(text)).forEach(events::add);
+    } catch (YAMLException e) {
+      return null;
+    }
+    if (events.size() < 6
+        || !(events.get(2) instanceof MappingStartEvent)
+        || ((MappingStartEvent) events.get(2)).isFlow()
+        || !(events.get(events.size() - 2) instanceof DocumentEndEvent)
+        || !(events.get(events.size() - 1) instanceof StreamEndEvent)
+        || events.get(3).getStartMark().getColumn() != 0) {
+      return null;
+    }
+    final Map<String, String> missing = new LinkedHashMap<>(overrides);
+    final StringBuilder patched = new StringBuilder(text);
+    final List<int[]> ranges = new ArrayList<>();
+    final List<String> values = new ArrayList<>();
+    int depth = 0;
+    String key = null;
+    for (Event event : events.subList(3, events.size() - 3)) {
+      if (depth > 0) {
+        depth += event instanceof CollectionStartEvent ? 1 : 0;
+        depth -= event instanceof CollectionEndEvent ? 1 : 0;
+      } else if (key == null) {
+        if (!(event instanceof ScalarEvent)) {
+          return null;
+        }
+        key = ((ScalarEvent) event).getValue();
+      } else {
+        if (overrides.containsKey(key)) {
+          if (!missing.containsKey(key)
+              || !(event instanceof ScalarEvent)
+              || ((ScalarEvent) event).getAnchor() != null
+              || ((ScalarEvent) event).getScalarStyle() == DumperOptions.ScalarStyle.LITERAL
+              || ((ScalarEvent) event).getScalarStyle() == DumperOptions.ScalarStyle.FOLDED) {
+            return null;
+          }
+          final String entry = renderEntry(key, missing.remove(key));
+          ranges.add(new int[] {event.getStartMark().getIndex(), event.getEndMark().getIndex()});
+          values.add(entry.substring(entry.indexOf(':') + 2));
+        }
+        depth += event instanceof CollectionStartEvent ? 1 : 0;
+        key = null;
+      }
+    }
+    for (int i = ranges.size() - 1; i >= 0; i--) {
+      patched.replace(ranges.get(i)[0], ranges.get(i)[1], values.get(i));
+    }
+    if (!missing.isEmpty()
+        && patched.length() > 0
+        && patched.charAt(patched.length() - 1) != '\n') {
+      patched.append('\n');
+    }
+    for (Map.Entry<String, String> entry : missing.entrySet()) {
+      patched.append(renderEntry(entry.getKey(), entry.getValue())).append('\n');
+    }
+    return patched.toString();
+  }
+
+  /** the entry as a single line, without its line break. */
+  private static String renderEntry(String key, String value) throws IOException {
+
+    return MAPPER.writeValueAsString(Collections.singletonMap(key, value)).trim();
+  }
+
+  /** lists the files to package, relative to the chart directory and separated by slashes. */
+  private static List<String> listFiles(Path chartDirectory, HelmIgnore helmIgnore)
+      throws IOException {
+
+    final List<String> files = new ArrayList<>();
+    Files.walkFileTree(
+        chartDirectory,
+        EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+        Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return helmIgnore.isIgnored(relativize(dir), true)
+                ? FileVisitResult.SKIP_SUBTREE
+                : FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            final String path = relativize(file);
+            if (attrs.isRegularFile() && !helmIgnore.isIgnored(path, false)) {
+              files.add(path);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          private String relativize(Path path) {
+            return chartDirectory.relativize(path).toString().replace('\\', '/');
+          }
+        });
+    return files;
+  }
+
+  /** the position helm gives a file in the archive, before ordering by name. */
+  private static int rank(String path) {
+
+    switch (path) {
+      case "Chart.lock":
+      case "requirements.yaml":
+      case "requirements.lock":
+        return 1;
+      case "values.yaml":
+        return 2;
+      case "values.schema.json":
+        return 3;
+      default:
+        if (path.startsWith("templates/")) {
+          return 4;
+        }
+        return path.startsWith("charts/") ? 6 : 5;
+    }
+  }
+
+  private static TarArchiveEntry newEntry(String name, long size, long modTime) {
+
+    final TarArchiveEntry entry = new TarArchiveEntry(name);
+    entry.setSize(size);
+    entry.setMode(FILE_MODE);
+    entry.setModTime(modTime);
+    entry.setUserName("");
+    entry.setGroupName("");
+    return entry;
+  }
+}
@@ -0,0 +1,97 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * The structural checks of <code>helm lint</code> which don't need helm: a Chart.yaml with the
+ * required fields, a known apiVersion and type and a semantic version, and a values.yaml which is
+ * valid YAML holding a map. Charts failing them would fail the lint anyway, so they are reported
+ * without forking helm.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ChartPreLinter {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+  private static final List<String> API_VERSIONS = Arrays.asList("v1", "v2");
+  private static final List<String> TYPES = Arrays.asList("application", "library");
+
+  /** the problems of the chart, none when it passes. */
+  public static List<String> check(Path chartDirectory) {
+
+    final List<String> problems = new ArrayList<>();
+    final JsonNode chart = read(chartDirectory.resolve("Chart.yaml"), true, problems);
+    if (chart != null) {
+      checkChart(chart, problems);
+    }
+    final JsonNode values = read(chartDirectory.resolve("values.yaml"), false, problems);
+    if (values != null && !values.isMissingNode() && !values.isNull() && !values.isObject()) {
+      problems.add("values.yaml: the values must be a map");
+    }
+    return problems;
+  }
+
+  private static void checkChart(JsonNode chart, List<String> problems) {
+
+    if (!chart.isObject()) {
+      problems.add("Chart.yaml: the chart metadata must be a map");
+      return;
+    }
+    for (String field : new String[] {"apiVersion", "name", "version"}) {
+      if (chart.path(field).asText("").trim().isEmpty()) {
+        problems.add(format("Chart.yaml: %s is required", field));
+      }
+    }
+    final String apiVersion = chart.path("apiVersion").asText("");
+    if (!apiVersion.isEmpty() && !API_VERSIONS.contains(apiVersion)) {
+      problems.add(
+          format("Chart.yaml: apiVersion '%s' is not valid, expected v1 or v2", apiVersion));
+    }
+    final String version = chart.path("version").asText("");
+    if (!version.isEmpty() && ChartVersion.tryParse(version) == null) {
+      problems.add(format("Chart.yaml: version '%s' is not a semantic version", version));
+    }
+    final String type = chart.path("type").asText("");
+    if (!type.isEmpty() && !TYPES.contains(type)) {
+      problems.add(
+          format("Chart.yaml: type '%s' is not valid, expected application or library", type));
+    }
+    if ("v1".equals(apiVersion) && chart.has("dependencies")) {
+      problems.add("Chart.yaml: dependencies belong into requirements.yaml with apiVersion v1");
+    }
+  }
+
+  /** the document in the file, null when it is missing or invalid, which is added as a problem. */
+  private static JsonNode read(Path file, boolean required, List<String> problems) {
+
+    if (!Files.isRegularFile(file)) {
+      if (required) {
+        problems.add(format("%s is missing", file.getFileName()));
+      }
+      return null;
+    }
+    try {
+      final JsonNode document = MAPPER.readTree(file.toFile());
+      return document == null ? MissingNode.getInstance() : document;
+    } catch (JsonProcessingException e) {
+      problems.add(format("%s is not valid YAML: %s", file.getFileName(), e.getOriginalMessage()));
+    } catch (IOException e) {
+      problems.add(format("%s can't be read: %s", file.getFileName(), e.getMessage()));
+    }
+    return null;
+  }
+}
@@ -0,0 +1,255 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import lombok.RequiredArgsConstructor;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The versions a chart repository offers, read from its index.yaml. The index is streamed token by
+ * token instead of being bound to a tree of maps, and only the version, the first url and the
+ * digest of every chart version are kept. Those are held in arrays per chart, sorted by version
+ * precedence, with the repeated strings shared, so even the indexes of the large public
+ * repositories take a few megabytes. Versions which aren't semantic versions are skipped, like helm
+ * does.
+ */
+public final class ChartRepositoryIndex {
+
+  private static final YAMLFactory FACTORY = new YAMLFactory();
+  private static final String ENTRIES = "entries";
+
+  private final Map<String, Chart> charts;
+
+  private ChartRepositoryIndex(Map<String, Chart> charts) {
+
+    this.charts = charts;
+  }
+
+  /** reads an index file, plain or gzipped. */
+  public static ChartRepositoryIndex load(Path indexFile) throws IOException {
+
+    try (InputStream is = new BufferedInputStream(Files.newInputStream(indexFile))) {
+      is.mark(2);
+      final boolean gzipped = is.read() == 0x1f && is.read() == 0x8b;
+      is.reset();
+      return parse(gzipped ? new GZIPInputStream(is) : is);
+    }
+  }
+
+  public static ChartRepositoryIndex parse(InputStream is) throws IOException {
+
+    final Map<String, String> strings = new HashMap<>();
+    final Map<String, Chart> charts = new TreeMap<>();
+    try (JsonParser parser = FACTORY.createParser(is)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Not a chart repository index");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String field = parser.getCurrentName();
+        final JsonToken value = parser.nextToken();
+        if (ENTRIES.equals(field) && value == JsonToken.START_OBJECT) {
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = intern(strings, parser.getCurrentName());
+            if (parser.nextToken() == JsonToken.START_ARRAY) {
+              final Chart chart = readChart(parser, strings);
+              if (chart.size() > 0) {
+                charts.put(name, chart);
+              }
+            } else {
+              parser.skipChildren();
+            }
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return new ChartRepositoryIndex(charts);
+  }
+
+  /** the names of the charts in the repository. */
+  public Set<String> getCharts() {
+
+    return Collections.unmodifiableSet(charts.keySet());
+  }
+
+  /** the versions of a chart, lowest first; none when the chart isn't in the repository. */
+  public List<String> getVersions(String chart) {
+
+    final Chart entry = charts.get(chart);
+    return entry == null
+        ? Collections.emptyList()
+        : Collections.unmodifiableList(Arrays.asList(entry.versions));
+  }
+
+  /** the highest version of the chart accepted by the filter, null when there is none. */
+  public String findHighest(String chart, Predicate<ChartVersion> filter) {
+
+    final Chart entry = charts.get(chart);
+    if (entry == null) {
+      return null;
+    }
+    for (int i = entry.size() - 1; i >= 0; i--) {
+      if (filter.test(entry.toVersion(i))) {
+        return entry.versions[i];
+      }
+    }
+    return null;
+  }
+
+  /** the url the chart version is downloaded from, as given in the index, or null. */
+  public String getUrl(String chart, String version) {
+
+    final Chart entry = charts.get(chart);
+    final int i = entry == null ? -1 : entry.indexOf(version);
+    return i < 0 ? null : entry.urls[i];
+  }
+
+  /** the digest of the chart version archive, or null. */
+  public String getDigest(String chart, String version) {
+
+    final Chart entry = charts.get(chart);
+    final int i = entry == null ? -1 : entry.indexOf(version);
+    return i < 0 ? null : entry.digests[i];
+  }
+
+  private static Chart readChart(JsonParser parser, Map<String, String> strings)
+      throws IOException {
+
+    final List<Release> releases = new ArrayList<>();
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      String version = null;
+      String url = null;
+      String digest = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String field = parser.getCurrentName();
+        final JsonToken value = parser.nextToken();
+        if ("version".equals(field) && value.isScalarValue()) {
+          version = parser.getText();
+        } else if ("digest".equals(field) && value.isScalarValue()) {
+          digest = parser.getText();
+        } else if ("urls".equals(field) && value == JsonToken.START_ARRAY) {
+          while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (url == null) {
+              url = parser.getText();
+            }
+            parser.skipChildren();
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+      final ChartVersion parsed = ChartVersion.tryParse(version);
+      if (parsed != null) {
+        releases.add(new Release(parsed, url, digest));
+      }
+    }
+    releases.sort(Comparator.comparing(release -> release.version));
+
+    final Chart chart = new Chart(releases.size());
+    for (int i = 0; i < releases.size(); i++) {
+      final Release release = releases.get(i);
+      chart.versions[i] = intern(strings, release.version.getText());
+      chart.numbers[3 * i] = release.version.getMajor();
+      chart.numbers[3 * i + 1] = release.version.getMinor();
+      chart.numbers[3 * i + 2] = release.version.getPatch();
+      chart.prereleases[i] = intern(strings, release.version.getPrerelease());
+      chart.urls[i] = release.url;
+      chart.digests[i] = release.digest;
+    }
+    return chart;
+  }
+
+  private static String intern(Map<String, String> strings, String string) {
+
+    return string == null ? null : strings.computeIfAbsent(string, s -> s);
+  }
+
+  @RequiredArgsConstructor
+  private static final class Release {
+
+    private final ChartVersion version;
+    private final String url;
+    private final String digest;
+  }
+
+  /** the versions of a chart, one slot per version in every array, lowest version first. */
+  private static final class Chart {
+
+    private final String[] versions;
+    /** major, minor and patch number of every version. */
+    private final int[] numbers;
+
+    private final String[] prereleases;
+    private final String[] urls;
+    private final String[] digests;
+
+    private Chart(int size) {
+
+      versions = new String[size];
+      numbers = new int[3 * size];
+      prereleases = new String[size];
+      urls = new String[size];
+      digests = new String[size];
+    }
+
+    private int size() {
+
+      return versions.length;
+    }
+
+    private ChartVersion toVersion(int i) {
+
+      return ChartVersion.of(
+          numbers[3 * i], numbers[3 * i + 1], numbers[3 * i + 2], prereleases[i]);
+    }
+
+    private int indexOf(String version) {
+
+      final ChartVersion parsed = ChartVersion.tryParse(version);
+      if (parsed == null) {
+        return -1;
+      }
+      int low = 0;
+      int high = versions.length - 1;
+      while (low <= high) {
+        final int middle = (low + high) >>> 1;
+        final int result =
+            ChartVersion.compare(
+                numbers[3 * middle],
+                numbers[3 * middle + 1],
+                numbers[3 * middle + 2],
+                prereleases[middle],
+                parsed.getMajor(),
+                parsed.getMinor(),
+                parsed.getPatch(),
+                parsed.getPrerelease());
+        if (result < 0) {
+          low = middle + 1;
+        } else if (result > 0) {
+          high = middle - 1;
+        } else {
+          return middle;
+        }
+      }
+      return -1;
+    }
+  }
+}
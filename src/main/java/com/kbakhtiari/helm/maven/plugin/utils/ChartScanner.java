@@ -0,0 +1,214 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.MatchPatterns;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.lang.String.format;
+
+/**
+ * Finds the directories holding a Chart.yaml below a root directory, following symbolic links.
+ * Excluded charts are left out, but the directories below them are still searched; only pruned
+ * directories, whose whole subtree is excluded, are not listed at all. The templates of a chart are
+ * never searched and, optionally, nothing below a chart is. A directory linking back to one of its
+ * ancestors is reported and skipped instead of being followed forever. The scan optionally forks a
+ * task per directory into a fork-join pool and can be cancelled by interrupting the calling thread.
+ */
+@Builder
+public class ChartScanner {
+
+  private static final String CHART_FILE = "Chart.yaml";
+  private static final String TEMPLATES_DIRECTORY = "templates";
+
+  private final Log log;
+  /** the chart directories not to report. */
+  private final MatchPatterns exclusions;
+  /** the directories not to search, optional. */
+  private final MatchPatterns prunedDirectories;
+  /** don't look for charts below a chart directory. */
+  private final boolean stopAtChart;
+
+  private final boolean parallel;
+
+  private final AtomicBoolean cancelled = new AtomicBoolean();
+  private final Map<Path, FileTime> stamps = new ConcurrentHashMap<>();
+
+  /** returns the chart directories below the root, sorted by path. */
+  public List<String> scan(Path root) throws IOException {
+
+    if (!Files.isDirectory(root)) {
+      throw new NoSuchFileException(root.toString());
+    }
+    final List<String> charts;
+    if (parallel) {
+      final ForkJoinTask<List<String>> task =
+          ForkJoinPool.commonPool().submit(new ScanTask(root, Collections.emptySet()));
+      try {
+        charts = task.get();
+      } catch (InterruptedException e) {
+        cancelled.set(true);
+        task.cancel(true);
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while scanning " + root);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof UncheckedIOException) {
+          throw ((UncheckedIOException) e.getCause()).getCause();
+        }
+        throw new IOException("Unable to scan " + root, e.getCause());
+      }
+    } else {
+      charts = new ArrayList<>();
+      scan(root, Collections.emptySet(), charts);
+    }
+    Collections.sort(charts);
+    return charts;
+  }
+
+  /**
+   * returns the modification times of the directories listed and the chart files found by the last
+   * scan. as long as none of them changes, a new scan finds the same charts.
+   */
+  public Map<Path, FileTime> getStamps() {
+
+    return stamps;
+  }
+
+  private void scan(Path directory, Set<Object> ancestors, List<String> charts) throws IOException {
+
+    if (Thread.currentThread().isInterrupted()) {
+      throw new InterruptedIOException("Interrupted while scanning " + directory);
+    }
+    final Listing listing = list(directory, ancestors);
+    if (listing == null) {
+      return;
+    }
+    if (listing.chart) {
+      charts.add(directory.toString());
+    }
+    for (Path subdirectory : listing.subdirectories) {
+      scan(subdirectory, listing.ancestors, charts);
+    }
+  }
+
+  /**
+   * lists a directory not pruned nor visited before on the current path, or returns null for one
+   * which is.
+   */
+  private Listing list(Path directory, Set<Object> ancestors) throws IOException {
+
+    if (prunedDirectories != null && prunedDirectories.matches(directory.toString(), false)) {
+      log.debug("Skip pruned directory " + directory);
+      return null;
+    }
+    final BasicFileAttributes attributes =
+        Files.readAttributes(directory, BasicFileAttributes.class);
+    final Object key = attributes.fileKey() != null ? attributes.fileKey() : directory.toRealPath();
+    if (ancestors.contains(key)) {
+      log.warn(format("Skip %s, it links back to one of its parent directories", directory));
+      return null;
+    }
+    final Set<Object> path = new HashSet<>(ancestors);
+    path.add(key);
+
+    boolean chart = false;
+    final List<Path> subdirectories = new ArrayList<>();
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        final String name = entry.getFileName().toString();
+        if (Files.isDirectory(entry)) {
+          subdirectories.add(entry);
+        } else if (name.equalsIgnoreCase(CHART_FILE)) {
+          chart = true;
+          stamps.put(entry, Files.getLastModifiedTime(entry));
+        }
+      }
+    } catch (IOException e) {
+      log.warn(format("Unable to list %s: %s", directory, e.getMessage()));
+      return null;
+    }
+    stamps.put(directory, attributes.lastModifiedTime());
+    if (chart && exclusions.matches(directory.toString(), false)) {
+      log.debug("Skip excluded directory " + directory);
+      chart = false;
+    }
+    if (chart) {
+      if (stopAtChart) {
+        subdirectories.clear();
+      } else {
+        subdirectories.removeIf(
+            subdirectory -> subdirectory.getFileName().toString().equals(TEMPLATES_DIRECTORY));
+      }
+    }
+    Collections.sort(subdirectories);
+    return new Listing(chart, subdirectories, path);
+  }
+
+  @RequiredArgsConstructor
+  private static class Listing {
+
+    private final boolean chart;
+    private final List<Path> subdirectories;
+    private final Set<Object> ancestors;
+  }
+
+  @RequiredArgsConstructor
+  private class ScanTask extends RecursiveTask<List<String>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Path directory;
+    private final Set<Object> ancestors;
+
+    @Override
+    protected List<String> compute() {
+
+      final List<String> charts = new ArrayList<>();
+      if (cancelled.get()) {
+        return charts;
+      }
+      final Listing listing;
+      try {
+        listing = list(directory, ancestors);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (listing == null) {
+        return charts;
+      }
+      if (listing.chart) {
+        charts.add(directory.toString());
+      }
+      final List<ScanTask> tasks = new ArrayList<>();
+      for (Path subdirectory : listing.subdirectories) {
+        tasks.add(new ScanTask(subdirectory, listing.ancestors));
+      }
+      for (ScanTask task : invokeAll(tasks)) {
+        charts.addAll(task.join());
+      }
+      return charts;
+    }
+  }
+}
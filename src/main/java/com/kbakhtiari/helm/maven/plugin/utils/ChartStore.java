@@ -0,0 +1,230 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * A content-addressed store of chart archives shared by all the builds of a machine, usually kept
+ * in the local maven repository. Archives are filed under their sha256, so every archive is stored
+ * once no matter how many charts depend on it, and placed into the charts by a hard link where the
+ * file system allows it, or by a copy. Entries are never modified once stored. Every use of an
+ * entry sets its last access time, which {@link #collect(Duration)} removes unused entries by.
+ */
+@RequiredArgsConstructor
+public class ChartStore {
+
+  private static final String ALGORITHM = "sha256";
+  private static final String TEMPORARY_DIRECTORY = "tmp";
+  private static final String COLLECTION_MARKER = ".last-collection";
+  private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+  /** how often the store is collected and how old an abandoned temporary file has to be. */
+  private static final Duration COLLECTION_INTERVAL = Duration.ofDays(1);
+
+  private final Path directory;
+  private final Log log;
+
+  /** the stored archive with the given sha256, or null when there is none. */
+  public Path get(String sha256) {
+
+    final Path entry = getEntry(sha256);
+    if (entry == null || !Files.isRegularFile(entry)) {
+      return null;
+    }
+    touch(entry);
+    return entry;
+  }
+
+  /** a new empty file on the same file system as the store, to be filled and then added. */
+  public Path createTempFile(String prefix) throws IOException {
+
+    final Path temporary = directory.resolve(TEMPORARY_DIRECTORY);
+    Files.createDirectories(temporary);
+    return Files.createTempFile(temporary, prefix, ".tmp");
+  }
+
+  /** a new empty directory on the same file system as the store. */
+  public Path createTempDirectory(String prefix) throws IOException {
+
+    final Path temporary = directory.resolve(TEMPORARY_DIRECTORY);
+    Files.createDirectories(temporary);
+    return Files.createTempDirectory(temporary, prefix);
+  }
+
+  /** moves the file into the store and returns its sha256. */
+  public String add(Path file) throws IOException {
+
+    final String sha256 = HashUtils.sha256Hex(file);
+    final Path entry = getEntry(sha256);
+    if (Files.exists(entry)) {
+      Files.delete(file);
+      touch(entry);
+      return sha256;
+    }
+    Files.createDirectories(entry.getParent());
+    try {
+      Files.move(file, entry, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(file, entry);
+    } catch (FileAlreadyExistsException e) {
+      Files.delete(file);
+    }
+    touch(entry);
+    log.debug(format("stored %s as %s", file.getFileName(), entry));
+    return sha256;
+  }
+
+  /**
+   * stores a copy of the file and returns its sha256. the file is copied rather than linked, since
+   * whoever wrote it may overwrite it in place.
+   */
+  public String put(Path file) throws IOException {
+
+    final String sha256 = HashUtils.sha256Hex(file);
+    if (get(sha256) != null) {
+      return sha256;
+    }
+    final Path temporary = createTempFile(file.getFileName().toString());
+    try {
+      Files.copy(file, temporary, StandardCopyOption.REPLACE_EXISTING);
+      add(temporary);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+    return sha256;
+  }
+
+  /** places the stored archive at the target, replacing whatever is there. */
+  public void materialize(String sha256, Path target) throws IOException {
+
+    final Path entry = get(sha256);
+    if (entry == null) {
+      throw new IOException(
+          format("No archive with %s %s in the store %s", ALGORITHM, sha256, directory));
+    }
+    Files.createDirectories(target.toAbsolutePath().getParent());
+    Files.deleteIfExists(target);
+    try {
+      Files.createLink(target, entry);
+    } catch (UnsupportedOperationException | IOException e) {
+      log.debug(format("Unable to link %s (%s), copying it", target, e.getMessage()));
+      Files.copy(entry, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * removes the archives not used for longer than the given age, and temporary files left behind by
+   * interrupted builds. returns the number of archives removed.
+   */
+  public int collect(Duration maxAge) throws IOException {
+
+    final Instant now = Instant.now();
+    final FileTime unusedSince = FileTime.from(now.minus(maxAge));
+    int removed = 0;
+    long freed = 0;
+    final Path entries = directory.resolve(ALGORITHM);
+    if (Files.isDirectory(entries)) {
+      try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(entries)) {
+        for (Path prefix : prefixes) {
+          try (DirectoryStream<Path> archives = Files.newDirectoryStream(prefix)) {
+            for (Path archive : archives) {
+              final BasicFileAttributes attributes =
+                  Files.readAttributes(archive, BasicFileAttributes.class);
+              if (attributes.lastAccessTime().compareTo(unusedSince) < 0
+                  && Files.deleteIfExists(archive)) {
+                removed++;
+                freed += attributes.size();
+              }
+            }
+          }
+          deleteIfEmpty(prefix);
+        }
+      }
+    }
+
+    final Path temporary = directory.resolve(TEMPORARY_DIRECTORY);
+    final FileTime abandonedSince = FileTime.from(now.minus(COLLECTION_INTERVAL));
+    if (Files.isDirectory(temporary)) {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(temporary)) {
+        for (Path file : files) {
+          if (Files.getLastModifiedTime(file).compareTo(abandonedSince) < 0) {
+            FileUtils.deleteQuietly(file.toFile());
+          }
+        }
+      }
+    }
+    log.info(
+        format(
+            "Removed %d chart archives unused for %d days from %s, freeing %d KB",
+            removed, maxAge.toDays(), directory, freed / 1024));
+    return removed;
+  }
+
+  /** collects the store unless it was collected during the last day. */
+  public void collectIfDue(Duration maxAge) throws IOException {
+
+    final Path marker = directory.resolve(COLLECTION_MARKER);
+    if (Files.exists(marker)
+        && Files.getLastModifiedTime(marker)
+                .compareTo(FileTime.from(Instant.now().minus(COLLECTION_INTERVAL)))
+            > 0) {
+      return;
+    }
+    Files.createDirectories(directory);
+    Files.write(marker, new byte[0]);
+    collect(maxAge);
+  }
+
+  private void touch(Path entry) {
+
+    try {
+      Files.getFileAttributeView(entry, BasicFileAttributeView.class)
+          .setTimes(null, FileTime.from(Instant.now()), null);
+    } catch (IOException e) {
+      log.debug(format("Unable to set the access time of %s: %s", entry, e.getMessage()));
+    }
+  }
+
+  private static void deleteIfEmpty(Path directory) throws IOException {
+
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      if (entries.iterator().hasNext()) {
+        return;
+      }
+    }
+    try {
+      Files.delete(directory);
+    } catch (NoSuchFileException | DirectoryNotEmptyException e) {
+      // used concurrently
+    }
+  }
+
+  /** the path of the entry, null for a string which isn't a sha256. */
+  private Path getEntry(String sha256) {
+
+    final String key = sha256 == null ? null : sha256.toLowerCase(Locale.ROOT);
+    if (key == null || !SHA256.matcher(key).matches()) {
+      return null;
+    }
+    return directory.resolve(ALGORITHM).resolve(key.substring(0, 2)).resolve(key);
+  }
+}
@@ -0,0 +1,159 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A chart version as helm reads it: semantic versioning, with an optional leading <code>v</code>
+ * and the minor and patch numbers defaulting to zero. Versions are ordered by precedence, build
+ * metadata is ignored.
+ */
+@Getter
+@EqualsAndHashCode(exclude = "text")
+public final class ChartVersion implements Comparable<ChartVersion> {
+
+  private static final Pattern VERSION =
+      Pattern.compile(
+          "v?(0|[1-9]\\d*)(?:\\.(0|[1-9]\\d*))?(?:\\.(0|[1-9]\\d*))?"
+              + "(?:-([0-9A-Za-z-]+(?:\\.[0-9A-Za-z-]+)*))?(?:\\+[0-9A-Za-z-]+(?:\\.[0-9A-Za-z-]+)*)?");
+
+  private final String text;
+  private final int major;
+  private final int minor;
+  private final int patch;
+  /** the pre-release identifiers, null for a release. */
+  private final String prerelease;
+
+  private ChartVersion(String text, int major, int minor, int patch, String prerelease) {
+
+    this.text = text;
+    this.major = major;
+    this.minor = minor;
+    this.patch = patch;
+    this.prerelease = prerelease;
+  }
+
+  public static ChartVersion parse(String text) {
+
+    final ChartVersion version = tryParse(text);
+    if (version == null) {
+      throw new IllegalArgumentException("Invalid chart version: " + text);
+    }
+    return version;
+  }
+
+  /** the version, or null when the text isn't one. */
+  public static ChartVersion tryParse(String text) {
+
+    if (text == null) {
+      return null;
+    }
+    final Matcher matcher = VERSION.matcher(text.trim());
+    if (!matcher.matches()) {
+      return null;
+    }
+    try {
+      return new ChartVersion(
+          text,
+          Integer.parseInt(matcher.group(1)),
+          matcher.group(2) == null ? 0 : Integer.parseInt(matcher.group(2)),
+          matcher.group(3) == null ? 0 : Integer.parseInt(matcher.group(3)),
+          matcher.group(4));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  public static ChartVersion of(int major, int minor, int patch, String prerelease) {
+
+    return new ChartVersion(
+        major + "." + minor + "." + patch + (prerelease == null ? "" : "-" + prerelease),
+        major,
+        minor,
+        patch,
+        prerelease);
+  }
+
+  public boolean isPrerelease() {
+
+    return prerelease != null;
+  }
+
+  @Override
+  public int compareTo(ChartVersion other) {
+
+    return compare(
+        major, minor, patch, prerelease, other.major, other.minor, other.patch, other.prerelease);
+  }
+
+  /** compares two versions given by their parts, by semantic versioning precedence. */
+  static int compare(
+      int major,
+      int minor,
+      int patch,
+      String prerelease,
+      int otherMajor,
+      int otherMinor,
+      int otherPatch,
+      String otherPrerelease) {
+
+    int result = Integer.compare(major, otherMajor);
+    if (result == 0) {
+      result = Integer.compare(minor, otherMinor);
+    }
+    if (result == 0) {
+      result = Integer.compare(patch, otherPatch);
+    }
+    if (result != 0) {
+      return result;
+    }
+    if (prerelease == null || otherPrerelease == null) {
+      return prerelease == null ? (otherPrerelease == null ? 0 : 1) : -1;
+    }
+    return comparePrerelease(prerelease, otherPrerelease);
+  }
+
+  private static int comparePrerelease(String prerelease, String other) {
+
+    final String[] identifiers = prerelease.split("\\.");
+    final String[] otherIdentifiers = other.split("\\.");
+    for (int i = 0; i < Math.min(identifiers.length, otherIdentifiers.length); i++) {
+      final boolean numeric = isNumeric(identifiers[i]);
+      final boolean otherNumeric = isNumeric(otherIdentifiers[i]);
+      final int result;
+      if (numeric && otherNumeric) {
+        result =
+            identifiers[i].length() != otherIdentifiers[i].length()
+                ? Integer.compare(identifiers[i].length(), otherIdentifiers[i].length())
+                : identifiers[i].compareTo(otherIdentifiers[i]);
+      } else if (numeric || otherNumeric) {
+        result = numeric ? -1 : 1;
+      } else {
+        result = identifiers[i].compareTo(otherIdentifiers[i]);
+      }
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(identifiers.length, otherIdentifiers.length);
+  }
+
+  private static boolean isNumeric(String identifier) {
+
+    for (int i = 0; i < identifier.length(); i++) {
+      if (!Character.isDigit(identifier.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+
+    return text;
+  }
+}
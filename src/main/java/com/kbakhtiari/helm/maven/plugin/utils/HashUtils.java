@@ -0,0 +1,55 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class HashUtils {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  public static MessageDigest newSha256() {
+
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+    }
+  }
+
+  public static String sha256Hex(String value) {
+
+    return toHex(newSha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public static String sha256Hex(Path file) throws IOException {
+
+    final MessageDigest digest = newSha256();
+    final byte[] buffer = new byte[64 * 1024];
+    try (InputStream is = Files.newInputStream(file)) {
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  public static String toHex(byte[] bytes) {
+
+    final char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+      chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,82 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A versioned store of helm executables shared by all the builds of a machine, usually kept in the
+ * local maven repository. An entry is installed at most once: concurrent builds are serialized by a
+ * file lock, concurrent modules of the same build additionally by an in-memory lock, and the
+ * executable only appears in the cache once it is completely written.
+ */
+@RequiredArgsConstructor
+public class HelmBinaryCache {
+
+  private static final String LOCK_FILE = ".lock";
+  private static final ConcurrentMap<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+  private final Path directory;
+  private final Log log;
+
+  /**
+   * returns the cached executable for the given key, installing it first with the given installer
+   * when it is not cached yet.
+   */
+  public Path get(String key, String executableName, Installer installer)
+      throws IOException, MojoExecutionException {
+
+    final Path entry = directory.resolve(key).toAbsolutePath().normalize();
+    final Path executable = entry.resolve(executableName);
+    if (Files.exists(executable)) {
+      log.debug("Found helm executable in the cache: " + executable);
+      return executable;
+    }
+
+    synchronized (LOCKS.computeIfAbsent(entry, path -> new Object())) {
+      Files.createDirectories(entry);
+      try (FileChannel channel =
+          FileChannel.open(
+              entry.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        // held until the channel is closed
+        channel.lock();
+
+        if (Files.exists(executable)) {
+          log.debug("Helm executable was installed concurrently in the cache: " + executable);
+          return executable;
+        }
+
+        log.info("Installing helm executable in the cache: " + executable);
+        final Path temporary = Files.createTempFile(entry, executableName, ".tmp");
+        try {
+          installer.install(temporary);
+          try {
+            Files.move(temporary, executable, StandardCopyOption.ATOMIC_MOVE);
+          } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, executable, StandardCopyOption.REPLACE_EXISTING);
+          }
+        } finally {
+          Files.deleteIfExists(temporary);
+        }
+        return executable;
+      }
+    }
+  }
+
+  /** writes a helm executable to the given path. */
+  @FunctionalInterface
+  public interface Installer {
+
+    void install(Path target) throws IOException, MojoExecutionException;
+  }
+}
@@ -0,0 +1,192 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.Builder;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+/**
+ * Downloads a file to disk with connect and read timeouts, retries with exponential backoff and
+ * resumes an interrupted download with an HTTP range request. The sha256 digest is computed while
+ * the bytes are streamed to disk, so no second pass over the file is needed to verify it.
+ */
+@Builder
+public class HelmDownloader {
+
+  private static final String PART_SUFFIX = ".part";
+
+  private final Log log;
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final int bufferSize;
+  private final int retries;
+  private final long backoff;
+  /** optional credentials for basic authentication. */
+  private final String username;
+
+  private final String password;
+
+  /**
+   * downloads the url to the target file. when an expected sha256 is given, the download fails
+   * unless the content matches it.
+   */
+  public void download(String url, String expectedSha256, Path target) throws IOException {
+
+    final Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+    for (int attempt = 0; ; attempt++) {
+      try {
+        final String sha256 = downloadOnce(url, part);
+        if (isNotEmpty(expectedSha256) && !expectedSha256.equalsIgnoreCase(sha256)) {
+          Files.deleteIfExists(part);
+          throw new ChecksumException(
+              format(
+                  "Checksum mismatch for %s: expected %s but was %s", url, expectedSha256, sha256));
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        return;
+      } catch (IOException e) {
+        if (attempt >= retries) {
+          throw e;
+        }
+        final long delay = backoff << attempt;
+        log.warn(
+            format(
+                "Download of %s failed (%s), retrying in %d ms [%d/%d]",
+                url, e.getMessage(), delay, attempt + 1, retries));
+        sleep(delay);
+      }
+    }
+  }
+
+  /**
+   * fetches a checksum file as published next to the helm archives and returns its digest. a
+   * missing checksum file is not retried, but reported at once as a {@link FileNotFoundException}.
+   */
+  public String fetchChecksum(String url) throws IOException {
+
+    for (int attempt = 0; ; attempt++) {
+      try {
+        final URLConnection connection = open(url);
+        try (InputStream is = connection.getInputStream()) {
+          final String content = IOUtils.toString(is, StandardCharsets.UTF_8).trim();
+          return content.split("\\s+")[0];
+        }
+      } catch (FileNotFoundException e) {
+        throw e;
+      } catch (IOException e) {
+        if (attempt >= retries) {
+          throw e;
+        }
+        sleep(backoff << attempt);
+      }
+    }
+  }
+
+  private String downloadOnce(String url, Path part) throws IOException {
+
+    final MessageDigest digest = HashUtils.newSha256();
+    final byte[] buffer = new byte[bufferSize > 0 ? bufferSize : 64 * 1024];
+
+    long existing = Files.exists(part) ? Files.size(part) : 0;
+    final URLConnection connection = open(url);
+    if (existing > 0) {
+      connection.setRequestProperty("Range", format("bytes=%d-", existing));
+    }
+
+    boolean append = false;
+    if (connection instanceof HttpURLConnection) {
+      final int status = ((HttpURLConnection) connection).getResponseCode();
+      if (status == HttpURLConnection.HTTP_PARTIAL) {
+        log.info(format("Resuming download of %s at byte %d", url, existing));
+        append = true;
+      } else if (status == 416 && existing > 0) {
+        log.debug("Partial download of " + url + " is already complete");
+        update(digest, part, buffer);
+        return HashUtils.toHex(digest.digest());
+      } else if (status >= 400) {
+        throw new IOException(format("Unable to download %s: HTTP %d", url, status));
+      }
+    }
+
+    if (append) {
+      update(digest, part, buffer);
+    }
+    try (InputStream is = connection.getInputStream();
+        OutputStream os =
+            Files.newOutputStream(
+                part,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+        os.write(buffer, 0, read);
+      }
+    }
+    return HashUtils.toHex(digest.digest());
+  }
+
+  private URLConnection open(String url) throws IOException {
+
+    final URLConnection connection = new URL(url).openConnection();
+    connection.setConnectTimeout(connectTimeout);
+    connection.setReadTimeout(readTimeout);
+    if (isNotEmpty(username)) {
+      connection.setRequestProperty(
+          "Authorization",
+          "Basic "
+              + Base64.getEncoder()
+                  .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8)));
+    }
+    return connection;
+  }
+
+  private static void update(MessageDigest digest, Path file, byte[] buffer) throws IOException {
+
+    try (InputStream is = Files.newInputStream(file)) {
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+  }
+
+  private static void sleep(long millis) throws IOException {
+
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting to retry the download", e);
+    }
+  }
+
+  /** signals downloaded content not matching its published checksum. */
+  public static class ChecksumException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ChecksumException(String message) {
+      super(message);
+    }
+  }
+}
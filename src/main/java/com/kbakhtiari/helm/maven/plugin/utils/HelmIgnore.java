@@ -0,0 +1,151 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * The rules of a chart's <code>.helmignore</code> file, evaluated the way helm evaluates them:
+ * shell glob patterns matched against the base name, or against the path relative to the chart when
+ * they contain a slash, a trailing slash for directories only and a leading <code>!</code> for
+ * negation. Like helm, hidden files below <code>templates/</code> are always ignored.
+ */
+public class HelmIgnore {
+
+  public static final String HELMIGNORE = ".helmignore";
+
+  private static final String DEFAULT_RULE = "templates/.?*";
+
+  private final List<Rule> rules = new ArrayList<>();
+
+  private HelmIgnore() {}
+
+  public static HelmIgnore load(Path chartDirectory) throws IOException {
+
+    final HelmIgnore helmIgnore = new HelmIgnore();
+    helmIgnore.add(DEFAULT_RULE);
+    final Path file = chartDirectory.resolve(HELMIGNORE);
+    if (Files.exists(file)) {
+      for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+        helmIgnore.add(line);
+      }
+    }
+    return helmIgnore;
+  }
+
+  /**
+   * true if the given path, relative to the chart directory and separated by slashes, has to be
+   * left out of the chart archive.
+   */
+  public boolean isIgnored(String path, boolean directory) {
+
+    if (path.isEmpty() || path.equals(".")) {
+      return false;
+    }
+    for (Rule rule : rules) {
+      if (rule.negate) {
+        if (rule.directoryOnly && !directory) {
+          return true;
+        }
+        if (!rule.matcher.test(path)) {
+          return true;
+        }
+        continue;
+      }
+      if (rule.directoryOnly && !directory) {
+        continue;
+      }
+      if (rule.matcher.test(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void add(String line) {
+
+    String rule = line.trim();
+    if (rule.isEmpty() || rule.startsWith("#") || rule.contains("**")) {
+      return;
+    }
+    final boolean negate = rule.startsWith("!");
+    if (negate) {
+      rule = rule.substring(1);
+    }
+    final boolean directoryOnly = rule.endsWith("/");
+    if (directoryOnly) {
+      rule = rule.substring(0, rule.length() - 1);
+    }
+    if (rule.isEmpty()) {
+      return;
+    }
+
+    final Predicate<String> matcher;
+    if (rule.startsWith("/")) {
+      final Pattern pattern = toPattern(rule.substring(1));
+      matcher = path -> pattern.matcher(path).matches();
+    } else if (rule.contains("/")) {
+      final Pattern pattern = toPattern(rule);
+      matcher = path -> pattern.matcher(path).matches();
+    } else {
+      final Pattern pattern = toPattern(rule);
+      matcher = path -> pattern.matcher(path.substring(path.lastIndexOf('/') + 1)).matches();
+    }
+    rules.add(new Rule(negate, directoryOnly, matcher));
+  }
+
+  /** translates a go filepath.Match pattern into a regular expression. */
+  private static Pattern toPattern(String glob) {
+
+    final StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < glob.length(); i++) {
+      final char c = glob.charAt(i);
+      switch (c) {
+        case '*':
+          regex.append("[^/]*");
+          break;
+        case '?':
+          regex.append("[^/]");
+          break;
+        case '[':
+          final int end = glob.indexOf(']', i + 1);
+          if (end < 0) {
+            regex.append("\\[");
+            break;
+          }
+          String characters = glob.substring(i + 1, end);
+          if (characters.startsWith("^")) {
+            characters = "^" + characters.substring(1).replace("\\", "\\\\");
+          } else {
+            characters = characters.replace("\\", "\\\\").replace("^", "\\^");
+          }
+          regex.append('[').append(characters).append(']');
+          i = end;
+          break;
+        case '\\':
+          if (i + 1 < glob.length()) {
+            regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+          }
+          break;
+        default:
+          regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  @RequiredArgsConstructor
+  private static class Rule {
+
+    private final boolean negate;
+    private final boolean directoryOnly;
+    private final Predicate<String> matcher;
+  }
+}
@@ -0,0 +1,202 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
+import com.kbakhtiari.helm.maven.plugin.pojo.HelmRepository;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.kbakhtiari.helm.maven.plugin.utils.JavaUtils.asMap;
+import static com.kbakhtiari.helm.maven.plugin.utils.JavaUtils.nvl;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.defaultIfEmpty;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+/**
+ * Reads and writes the repository config file of helm (repositories.yaml) and locates the
+ * repository cache, the same way helm 3 does, so repositories can be registered without running
+ * <code>helm repo add</code> for each of them.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class HelmRepositoryConfig {
+
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper(
+          new YAMLFactory()
+              .disable(YAMLGenerator.Feature.WRITE_DOC_START_MARKER)
+              .enable(YAMLGenerator.Feature.MINIMIZE_QUOTES)
+              .enable(YAMLGenerator.Feature.ALWAYS_QUOTE_NUMBERS_AS_STRINGS));
+
+  private static final String REPOSITORIES = "repositories";
+
+  /** the configured repository config file, or the one helm uses by default. */
+  public static Path getConfigFile(String configured) {
+
+    if (isNotEmpty(configured)) {
+      return Paths.get(configured);
+    }
+    if (isNotEmpty(System.getenv("HELM_REPOSITORY_CONFIG"))) {
+      return Paths.get(System.getenv("HELM_REPOSITORY_CONFIG"));
+    }
+    return getHelmHome("HELM_CONFIG_HOME", "XDG_CONFIG_HOME", getDefaultConfigHome())
+        .resolve("repositories.yaml");
+  }
+
+  /** the configured repository cache directory, or the one helm uses by default. */
+  public static Path getCacheDirectory(String configured) {
+
+    if (isNotEmpty(configured)) {
+      return Paths.get(configured);
+    }
+    if (isNotEmpty(System.getenv("HELM_REPOSITORY_CACHE"))) {
+      return Paths.get(System.getenv("HELM_REPOSITORY_CACHE"));
+    }
+    return getHelmHome("HELM_CACHE_HOME", "XDG_CACHE_HOME", getDefaultCacheHome())
+        .resolve("repository");
+  }
+
+  /** the file helm keeps the index of the given repository in. */
+  public static Path getIndexFile(Path cacheDirectory, String repositoryName) {
+
+    return cacheDirectory.resolve(repositoryName + "-index.yaml");
+  }
+
+  /** the repositories registered in the config file, none when there is no such file. */
+  public static List<HelmRepository> readRepositories(Path configFile) throws IOException {
+
+    final List<HelmRepository> repositories = new ArrayList<>();
+    if (!Files.exists(configFile) || Files.size(configFile) == 0) {
+      return repositories;
+    }
+    final Map<String, Object> config = asMap(MAPPER.readValue(configFile.toFile(), Map.class));
+    final Object entries = config == null ? null : config.get(REPOSITORIES);
+    if (!(entries instanceof List)) {
+      return repositories;
+    }
+    for (Object item : (List<?>) entries) {
+      final Map<String, Object> entry = asMap(item);
+      final HelmRepository repository = new HelmRepository();
+      repository.setName((String) entry.get("name"));
+      repository.setUrl((String) entry.get("url"));
+      repository.setUsername(defaultIfEmpty((String) entry.get("username"), null));
+      repository.setPassword(defaultIfEmpty((String) entry.get("password"), null));
+      repositories.add(repository);
+    }
+    return repositories;
+  }
+
+  /**
+   * adds the repositories to the config file in one pass, replacing the ones with the same name and
+   * leaving all the others untouched. the file is locked like helm locks it while writing.
+   */
+  public static synchronized void addRepositories(
+      Path configFile, List<HelmRepository> repositories, Log log) throws IOException {
+
+    final Path directory = configFile.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    final String fileName = configFile.getFileName().toString();
+    final Path lockFile =
+        directory.resolve(
+            (fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName)
+                + ".lock");
+
+    try (FileChannel channel =
+        FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      // held until the channel is closed
+      channel.lock();
+
+      Map<String, Object> config = null;
+      if (Files.exists(configFile) && Files.size(configFile) > 0) {
+        config = asMap(MAPPER.readValue(configFile.toFile(), Map.class));
+      }
+      if (config == null) {
+        config = new LinkedHashMap<>();
+        config.put("apiVersion", EMPTY);
+      }
+
+      final List<Map<String, Object>> entries = new ArrayList<>();
+      final Object existing = config.get(REPOSITORIES);
+      if (existing instanceof List) {
+        ((List<?>) existing).forEach(entry -> entries.add(asMap(entry)));
+      }
+      for (HelmRepository repository : repositories) {
+        entries.removeIf(entry -> repository.getName().equals(entry.get("name")));
+        entries.add(toEntry(repository));
+        log.debug(
+            format("registering repository %s at %s", repository.getName(), repository.getUrl()));
+      }
+      config.put("generated", Instant.now().toString());
+      config.put(REPOSITORIES, entries);
+
+      final Path temporary = Files.createTempFile(directory, fileName, ".tmp");
+      try {
+        MAPPER.writeValue(temporary.toFile(), config);
+        Files.move(temporary, configFile, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+    }
+  }
+
+  private static Map<String, Object> toEntry(HelmRepository repository) {
+
+    final Map<String, Object> entry = new LinkedHashMap<>();
+    entry.put("caFile", EMPTY);
+    entry.put("certFile", EMPTY);
+    entry.put("insecure_skip_tls_verify", false);
+    entry.put("keyFile", EMPTY);
+    entry.put("name", repository.getName());
+    entry.put("password", nvl(repository.getPassword(), EMPTY));
+    entry.put("url", repository.getUrl());
+    entry.put("username", nvl(repository.getUsername(), EMPTY));
+    return entry;
+  }
+
+  private static Path getHelmHome(String helmVariable, String xdgVariable, Path defaultHome) {
+
+    if (isNotEmpty(System.getenv(helmVariable))) {
+      return Paths.get(System.getenv(helmVariable));
+    }
+    if (isNotEmpty(System.getenv(xdgVariable))) {
+      return Paths.get(System.getenv(xdgVariable), "helm");
+    }
+    return defaultHome.resolve("helm");
+  }
+
+  private static Path getDefaultConfigHome() {
+
+    if (SystemUtils.IS_OS_WINDOWS) {
+      return Paths.get(nvl(System.getenv("APPDATA"), SystemUtils.USER_HOME));
+    }
+    return SystemUtils.IS_OS_MAC
+        ? Paths.get(SystemUtils.USER_HOME, "Library", "Preferences")
+        : Paths.get(SystemUtils.USER_HOME, ".config");
+  }
+
+  private static Path getDefaultCacheHome() {
+
+    if (SystemUtils.IS_OS_WINDOWS) {
+      return Paths.get(SystemUtils.JAVA_IO_TMPDIR);
+    }
+    return SystemUtils.IS_OS_MAC
+        ? Paths.get(SystemUtils.USER_HOME, "Library", "Caches")
+        : Paths.get(SystemUtils.USER_HOME, ".cache");
+  }
+}
@@ -4,6 +4,7 @@ import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Map;
 import java.util.Objects;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
@@ -18,4 +19,11 @@ public final class JavaUtils {
     }
     return a;
   }
+
+  /** the map as the yaml and json parsers build it, with string keys; null stays null. */
+  @SuppressWarnings("unchecked")
+  public static Map<String, Object> asMap(Object map) {
+
+    return (Map<String, Object>) map;
+  }
 }
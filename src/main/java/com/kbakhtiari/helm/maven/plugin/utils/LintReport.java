@@ -0,0 +1,140 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The results of linting the charts of a build, collected from concurrent lints. The report is
+ * written as a JUnit XML file, which CI servers show like the results of tests, and as JSON.
+ */
+public class LintReport {
+
+  public static final String XML_REPORT = "TEST-helm-lint.xml";
+  public static final String JSON_REPORT = "helm-lint.json";
+
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  /** characters XML 1.0 can't hold, like the escape sequences of colored output. */
+  private static final Pattern INVALID_XML =
+      Pattern.compile("[^\\t\\n\\r\\x{20}-\\x{D7FF}\\x{E000}-\\x{FFFD}\\x{10000}-\\x{10FFFF}]");
+
+  private final Instant started = Instant.now();
+  private final ConcurrentLinkedQueue<Result> results = new ConcurrentLinkedQueue<>();
+
+  /** records the lint of a chart; the failure is null when the chart passed. */
+  public void add(String chart, long durationMillis, String failure, String output) {
+
+    results.add(new Result(chart, durationMillis, failure, output));
+  }
+
+  /** the results ordered by chart. */
+  public List<Result> getResults() {
+
+    return results.stream()
+        .sorted(Comparator.comparing(Result::getChart))
+        .collect(Collectors.toList());
+  }
+
+  public List<Result> getFailures() {
+
+    return getResults().stream().filter(Result::isFailed).collect(Collectors.toList());
+  }
+
+  /** writes the JUnit XML and the JSON report into the directory. */
+  public void write(Path directory) throws IOException {
+
+    Files.createDirectories(directory);
+    final List<Result> sorted = getResults();
+    try (Writer writer =
+        Files.newBufferedWriter(directory.resolve(JSON_REPORT), StandardCharsets.UTF_8)) {
+      GSON.toJson(sorted, writer);
+    }
+    try (Writer writer =
+        Files.newBufferedWriter(directory.resolve(XML_REPORT), StandardCharsets.UTF_8)) {
+      writeXml(sorted, writer);
+    } catch (XMLStreamException e) {
+      throw new IOException("Unable to write the lint report to " + directory, e);
+    }
+  }
+
+  private void writeXml(List<Result> sorted, Writer writer) throws XMLStreamException {
+
+    final XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+    xml.writeStartDocument("UTF-8", "1.0");
+    xml.writeStartElement("testsuite");
+    xml.writeAttribute("name", "helm-lint");
+    xml.writeAttribute("tests", String.valueOf(sorted.size()));
+    xml.writeAttribute(
+        "failures", String.valueOf(sorted.stream().filter(Result::isFailed).count()));
+    xml.writeAttribute("errors", "0");
+    xml.writeAttribute("skipped", "0");
+    xml.writeAttribute("time", seconds(ChronoUnit.MILLIS.between(started, Instant.now())));
+    xml.writeAttribute("timestamp", started.truncatedTo(ChronoUnit.SECONDS).toString());
+    for (Result result : sorted) {
+      xml.writeStartElement("testcase");
+      xml.writeAttribute("classname", "helm.lint");
+      xml.writeAttribute("name", clean(result.getChart()));
+      xml.writeAttribute("time", seconds(result.getDuration()));
+      if (result.isFailed()) {
+        xml.writeStartElement("failure");
+        xml.writeAttribute("message", clean(result.getFailure()));
+        xml.writeCharacters(clean(result.getOutput()));
+        xml.writeEndElement();
+      } else {
+        xml.writeStartElement("system-out");
+        xml.writeCharacters(clean(result.getOutput()));
+        xml.writeEndElement();
+      }
+      xml.writeEndElement();
+    }
+    xml.writeEndElement();
+    xml.writeEndDocument();
+    xml.close();
+  }
+
+  private static String seconds(long millis) {
+
+    return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+  }
+
+  private static String clean(String text) {
+
+    return text == null ? "" : INVALID_XML.matcher(text).replaceAll("");
+  }
+
+  @Data
+  @AllArgsConstructor
+  public static class Result {
+
+    private String chart;
+    /** milliseconds the lint took. */
+    private long duration;
+    /** why the chart failed the lint, null when it passed. */
+    private String failure;
+
+    private String output;
+
+    public boolean isFailed() {
+
+      return failure != null;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+
+/**
+ * A cache of the manifests <code>helm template</code> rendered, shared by all the builds of a
+ * machine and keyed by a fingerprint of everything the rendering depends on. Its size on disk is
+ * bounded: every hit marks the entry as used, and {@link #evict()} removes the entries used least
+ * recently once the cache grows beyond its maximum size.
+ */
+@RequiredArgsConstructor
+public class ManifestCache {
+
+  private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}");
+  private static final String SUFFIX = ".yaml";
+
+  private final Path directory;
+  /** maximum number of bytes the entries may take. */
+  private final long maxSize;
+
+  private final Log log;
+
+  @Getter private final AtomicInteger hits = new AtomicInteger();
+  @Getter private final AtomicInteger misses = new AtomicInteger();
+  @Getter private final AtomicInteger evictions = new AtomicInteger();
+
+  /**
+   * the key of a rendering: a digest of the chart directory and of all the other inputs given, like
+   * the command line, the values files and the identity of the helm executable.
+   */
+  public static String key(Path chartDirectory, String... inputs) throws IOException {
+
+    return PackageIndex.fingerprint(chartDirectory, inputs);
+  }
+
+  /** copies the cached manifests to the target, returns false when there are none. */
+  public boolean get(String key, Path target) throws IOException {
+
+    final Path entry = getEntry(key);
+    try {
+      Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+      Files.createDirectories(target.toAbsolutePath().getParent());
+      final Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), "", ".tmp");
+      try {
+        Files.copy(entry, temporary, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+    } catch (NoSuchFileException e) {
+      misses.incrementAndGet();
+      return false;
+    }
+    hits.incrementAndGet();
+    log.debug(format("manifests of %s taken from %s", target, entry));
+    return true;
+  }
+
+  /** keeps a copy of the rendered manifests. */
+  public void put(String key, Path manifests) throws IOException {
+
+    final Path entry = getEntry(key);
+    Files.createDirectories(entry.getParent());
+    final Path temporary = Files.createTempFile(entry.getParent(), key, ".tmp");
+    try {
+      Files.copy(manifests, temporary, StandardCopyOption.REPLACE_EXISTING);
+      try {
+        Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /** removes the least recently used entries until the cache fits its maximum size. */
+  public void evict() throws IOException {
+
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    final List<Entry> entries = new ArrayList<>();
+    try (Stream<Path> files = Files.walk(directory, 2)) {
+      for (Path file :
+          files.filter(f -> f.toString().endsWith(SUFFIX)).collect(Collectors.toList())) {
+        try {
+          entries.add(new Entry(file, Files.readAttributes(file, BasicFileAttributes.class)));
+        } catch (NoSuchFileException e) {
+          // evicted concurrently
+        }
+      }
+    }
+    long size = entries.stream().mapToLong(entry -> entry.attributes.size()).sum();
+    entries.sort(Comparator.comparing(entry -> entry.attributes.lastModifiedTime()));
+    for (Entry entry : entries) {
+      if (size <= maxSize) {
+        break;
+      }
+      if (Files.deleteIfExists(entry.file)) {
+        evictions.incrementAndGet();
+      }
+      size -= entry.attributes.size();
+    }
+  }
+
+  /** the hits, misses and evictions, for the end of the build. */
+  public String getStatistics() {
+
+    return format(
+        "Manifest cache: %d hits, %d misses, %d evicted",
+        hits.get(), misses.get(), evictions.get());
+  }
+
+  private Path getEntry(String key) {
+
+    if (!KEY.matcher(key).matches()) {
+      throw new IllegalArgumentException("Invalid manifest cache key " + key);
+    }
+    return directory.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+  }
+
+  @RequiredArgsConstructor
+  private static final class Entry {
+
+    private final Path file;
+    private final BasicFileAttributes attributes;
+  }
+}
@@ -0,0 +1,104 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The resources of a rendered manifest file, by kind, namespace and name, with the byte range of
+ * every resource in the manifest file, so a single resource is read without parsing the others.
+ * Written next to the resources {@link ManifestSplitter} splits a manifest file into.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ManifestIndex {
+
+  public static final String INDEX_FILE = "index.json";
+
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+  /** the manifest file the offsets refer to. */
+  private String manifest;
+
+  private List<Entry> resources = new ArrayList<>();
+
+  public static ManifestIndex load(Path file) throws IOException {
+
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return GSON.fromJson(reader, ManifestIndex.class);
+    }
+  }
+
+  public void save(Path file) throws IOException {
+
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      GSON.toJson(this, writer);
+    }
+  }
+
+  /**
+   * the resource, null when there is none; the namespace is null for the resources which don't set
+   * one, like cluster wide ones.
+   */
+  public Entry find(String kind, String namespace, String name) {
+
+    for (Entry entry : resources) {
+      if (entry.kind.equals(kind)
+          && Objects.equals(entry.namespace, namespace)
+          && Objects.equals(entry.name, name)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /** reads the document of the resource from the manifest file. */
+  public byte[] read(Entry entry) throws IOException {
+
+    final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(entry.length));
+    try (FileChannel channel = FileChannel.open(Paths.get(manifest), StandardOpenOption.READ)) {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, entry.offset + buffer.position()) < 0) {
+          throw new IOException("The manifest file " + manifest + " is shorter than its index");
+        }
+      }
+    }
+    return buffer.array();
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Entry {
+
+    private String apiVersion;
+    private String kind;
+    private String namespace;
+    private String name;
+    /** the template the resource was rendered from, as helm notes it. */
+    private String source;
+    /** the resource file, relative to the index. */
+    private String file;
+    /** where the document of the resource starts in the manifest file, in bytes. */
+    private long offset;
+
+    private long length;
+  }
+}
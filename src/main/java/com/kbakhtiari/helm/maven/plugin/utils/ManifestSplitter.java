@@ -0,0 +1,213 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * Splits the manifests <code>helm template</code> rendered into one file per resource, and indexes
+ * the resources in a {@link ManifestIndex}. The manifests are read line by line, and only the
+ * document being split is held in memory, so splitting the render of a big umbrella chart takes no
+ * more memory than its biggest resource.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ManifestSplitter {
+
+  /** the directory of the resources which don't set a namespace. */
+  public static final String NO_NAMESPACE = "_";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+  private static final byte[] SOURCE = "# Source: ".getBytes(StandardCharsets.US_ASCII);
+  private static final Pattern UNSAFE = Pattern.compile("[^A-Za-z0-9._-]");
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  /**
+   * writes every resource of the manifests into the directory, as <code>
+   * &lt;namespace&gt;/&lt;kind&gt;-&lt;name&gt;.yaml</code>, next to the index of the resources.
+   * Whatever the directory held before is removed.
+   */
+  public static ManifestIndex split(Path manifest, Path directory) throws IOException {
+
+    FileUtils.deleteDirectory(directory.toFile());
+    Files.createDirectories(directory);
+
+    final ManifestIndex index = new ManifestIndex();
+    index.setManifest(manifest.toAbsolutePath().toString());
+    final Splitter splitter = new Splitter(index, directory);
+    try (InputStream in = Files.newInputStream(manifest)) {
+      final byte[] chunk = new byte[CHUNK_SIZE];
+      final Buffer line = new Buffer();
+      long offset = 0;
+      int read;
+      while ((read = in.read(chunk)) > 0) {
+        int start = 0;
+        for (int i = 0; i < read; i++) {
+          if (chunk[i] == '\n') {
+            line.write(chunk, start, i + 1 - start);
+            splitter.line(line, offset);
+            offset += line.size();
+            line.reset();
+            start = i + 1;
+          }
+        }
+        line.write(chunk, start, read - start);
+      }
+      if (line.size() > 0) {
+        splitter.line(line, offset);
+      }
+    }
+    splitter.endDocument();
+    index.save(directory.resolve(ManifestIndex.INDEX_FILE));
+    return index;
+  }
+
+  @RequiredArgsConstructor
+  private static final class Splitter {
+
+    private final ManifestIndex index;
+    private final Path directory;
+
+    private final Buffer document = new Buffer();
+    private final Set<String> files = new HashSet<>();
+    private long documentOffset;
+    private String source;
+
+    private void line(Buffer line, long offset) throws IOException {
+
+      if (isSeparator(line)) {
+        endDocument();
+        documentOffset = offset + line.size();
+        return;
+      }
+      if (source == null && line.startsWith(SOURCE)) {
+        source =
+            new String(
+                    line.array(),
+                    SOURCE.length,
+                    line.size() - SOURCE.length,
+                    StandardCharsets.UTF_8)
+                .trim();
+      }
+      document.write(line.array(), 0, line.size());
+    }
+
+    private void endDocument() throws IOException {
+
+      try {
+        if (document.size() > 0) {
+          final JsonNode resource;
+          try {
+            resource = MAPPER.readTree(document.array(), 0, document.size());
+          } catch (JsonProcessingException e) {
+            throw new IOException(
+                format(
+                    "The document at byte %d of %s is not valid YAML: %s",
+                    documentOffset, index.getManifest(), e.getOriginalMessage()),
+                e);
+          }
+          if (resource != null && resource.isObject() && text(resource.path("kind")) != null) {
+            write(resource);
+          }
+        }
+      } finally {
+        document.reset();
+        source = null;
+      }
+    }
+
+    private void write(JsonNode resource) throws IOException {
+
+      final String kind = text(resource.path("kind"));
+      final String namespace = text(resource.path("metadata").path("namespace"));
+      final String name = text(resource.path("metadata").path("name"));
+
+      final String prefix =
+          (namespace == null ? NO_NAMESPACE : safe(namespace))
+              + "/"
+              + safe(kind.toLowerCase(Locale.ROOT))
+              + (name == null ? "" : "-" + safe(name));
+      String file = prefix + ".yaml";
+      for (int i = 2; !files.add(file); i++) {
+        file = prefix + "-" + i + ".yaml";
+      }
+      final Path target = directory.resolve(file);
+      Files.createDirectories(target.getParent());
+      try (OutputStream out = Files.newOutputStream(target)) {
+        document.writeTo(out);
+      }
+      index
+          .getResources()
+          .add(
+              new ManifestIndex.Entry(
+                  text(resource.path("apiVersion")),
+                  kind,
+                  namespace,
+                  name,
+                  source,
+                  file,
+                  documentOffset,
+                  document.size()));
+    }
+
+    private static boolean isSeparator(Buffer line) {
+
+      final byte[] bytes = line.array();
+      return line.size() >= 3
+          && bytes[0] == '-'
+          && bytes[1] == '-'
+          && bytes[2] == '-'
+          && (line.size() == 3 || Character.isWhitespace(bytes[3]));
+    }
+
+    private static String text(JsonNode node) {
+
+      return node.isValueNode() && !node.asText().isEmpty() ? node.asText() : null;
+    }
+
+    private static String safe(String name) {
+
+      return UNSAFE.matcher(name).replaceAll("_");
+    }
+  }
+
+  /** a byte buffer whose content is read in place, without copying it. */
+  private static final class Buffer extends ByteArrayOutputStream {
+
+    private byte[] array() {
+
+      return buf;
+    }
+
+    private boolean startsWith(byte[] prefix) {
+
+      if (count < prefix.length) {
+        return false;
+      }
+      for (int i = 0; i < prefix.length; i++) {
+        if (buf[i] != prefix[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
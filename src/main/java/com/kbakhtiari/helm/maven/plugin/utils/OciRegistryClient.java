@@ -0,0 +1,158 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import lombok.Builder;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+/**
+ * A minimal client of the OCI distribution api, just enough to find out which manifest a registry
+ * holds for a chart reference without downloading it. Authenticates with basic credentials or, when
+ * the registry asks for it, with a bearer token obtained from its token service.
+ */
+@Builder
+public class OciRegistryClient {
+
+  private static final String MANIFEST_TYPES =
+      "application/vnd.oci.image.manifest.v1+json,"
+          + "application/vnd.docker.distribution.manifest.v2+json";
+  private static final Pattern CHALLENGE_PARAMETER = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+  private static final Gson GSON = new Gson();
+
+  private final Log log;
+  private final String username;
+  private final String password;
+  private final boolean plainHttp;
+  private final int connectTimeout;
+  private final int readTimeout;
+
+  /**
+   * returns the digest of the manifest the registry holds for a reference like <code>
+   * host:port/repository/name:tag</code>, or null when the registry does not hold it.
+   */
+  public String getManifestDigest(String reference) throws IOException {
+
+    final int slash = reference.indexOf('/');
+    final int colon = reference.lastIndexOf(':');
+    if (slash < 0 || colon < slash) {
+      throw new IOException("Not a chart reference: " + reference);
+    }
+    final URL url =
+        new URL(
+            format(
+                "%s://%s/v2/%s/manifests/%s",
+                plainHttp ? "http" : "https",
+                reference.substring(0, slash),
+                reference.substring(slash + 1, colon),
+                reference.substring(colon + 1)));
+
+    HttpURLConnection connection = head(url, basicAuthorization());
+    if (connection.getResponseCode() == HttpURLConnection.HTTP_UNAUTHORIZED) {
+      final String challenge = connection.getHeaderField("WWW-Authenticate");
+      if (challenge != null && challenge.regionMatches(true, 0, "Bearer ", 0, 7)) {
+        connection = head(url, "Bearer " + fetchToken(challenge));
+      }
+    }
+
+    final int status = connection.getResponseCode();
+    if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+      return null;
+    }
+    if (status != HttpURLConnection.HTTP_OK) {
+      throw new IOException(format("Unable to look up %s: HTTP %d", url, status));
+    }
+    final String digest = connection.getHeaderField("Docker-Content-Digest");
+    log.debug(format("registry holds %s for %s", digest, reference));
+    return digest;
+  }
+
+  private HttpURLConnection head(URL url, String authorization) throws IOException {
+
+    final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("HEAD");
+    connection.setConnectTimeout(connectTimeout);
+    connection.setReadTimeout(readTimeout);
+    connection.setRequestProperty("Accept", MANIFEST_TYPES);
+    if (authorization != null) {
+      connection.setRequestProperty("Authorization", authorization);
+    }
+    return connection;
+  }
+
+  private String fetchToken(String challenge) throws IOException {
+
+    final Map<String, String> parameters = new LinkedHashMap<>();
+    final Matcher matcher = CHALLENGE_PARAMETER.matcher(challenge);
+    while (matcher.find()) {
+      parameters.put(matcher.group(1), matcher.group(2));
+    }
+    final String realm = parameters.remove("realm");
+    if (realm == null) {
+      throw new IOException("No token realm in the challenge: " + challenge);
+    }
+
+    final StringBuilder url = new StringBuilder(realm);
+    char separator = realm.contains("?") ? '&' : '?';
+    for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+      url.append(separator)
+          .append(parameter.getKey())
+          .append('=')
+          .append(encode(parameter.getValue()));
+      separator = '&';
+    }
+
+    final HttpURLConnection connection =
+        (HttpURLConnection) new URL(url.toString()).openConnection();
+    connection.setConnectTimeout(connectTimeout);
+    connection.setReadTimeout(readTimeout);
+    final String authorization = basicAuthorization();
+    if (authorization != null) {
+      connection.setRequestProperty("Authorization", authorization);
+    }
+    if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      throw new IOException(
+          format("Unable to obtain a token from %s: HTTP %d", realm, connection.getResponseCode()));
+    }
+    try (Reader reader =
+        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+      final JsonObject response = GSON.fromJson(reader, JsonObject.class);
+      final String key = response.has("token") ? "token" : "access_token";
+      if (!response.has(key)) {
+        throw new IOException("No token in the response of " + realm);
+      }
+      return response.get(key).getAsString();
+    }
+  }
+
+  private String basicAuthorization() {
+
+    if (isEmpty(username)) {
+      return null;
+    }
+    return "Basic "
+        + Base64.getEncoder()
+            .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String encode(String value) throws UnsupportedEncodingException {
+
+    return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+  }
+}
@@ -0,0 +1,134 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+
+/**
+ * Remembers the fingerprint of the inputs every chart was last packaged from, so unchanged charts
+ * can reuse their existing archive instead of being packaged again. The index is kept as a json
+ * file in the output directory, next to the archives it describes.
+ */
+public class PackageIndex {
+
+  private static final String INDEX_FILE = ".helm-package-index.json";
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+  private final Path file;
+  private final Log log;
+  private final Map<String, Entry> entries;
+
+  private PackageIndex(Path file, Log log, Map<String, Entry> entries) {
+
+    this.file = file;
+    this.log = log;
+    this.entries = new ConcurrentHashMap<>(entries);
+  }
+
+  public static PackageIndex load(Path outputDirectory, Log log) {
+
+    final Path file = outputDirectory.resolve(INDEX_FILE);
+    Map<String, Entry> entries = null;
+    if (Files.exists(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        entries = GSON.fromJson(reader, new TypeToken<Map<String, Entry>>() {}.getType());
+      } catch (IOException | JsonParseException e) {
+        log.warn("Ignoring unreadable package index " + file + ": " + e.getMessage());
+      }
+    }
+    return new PackageIndex(file, log, entries == null ? new TreeMap<>() : entries);
+  }
+
+  /** true if the chart was packaged from the same inputs and its archive still exists. */
+  public boolean isUpToDate(String chartDirectory, String fingerprint) {
+
+    final Entry entry = entries.get(chartDirectory);
+    return entry != null
+        && entry.getFingerprint().equals(fingerprint)
+        && Files.exists(Paths.get(entry.getArchive()));
+  }
+
+  public void update(String chartDirectory, String fingerprint, Path archive) {
+
+    entries.put(chartDirectory, new Entry(fingerprint, archive.toString()));
+  }
+
+  public void save() throws IOException {
+
+    Files.createDirectories(file.getParent());
+    final Path temporary = Files.createTempFile(file.getParent(), INDEX_FILE, ".tmp");
+    try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      GSON.toJson(new TreeMap<>(entries), writer);
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    log.debug("package index written to " + file);
+  }
+
+  /**
+   * digests the relative path and the content of every file below the chart directory, followed by
+   * the given additional inputs.
+   */
+  public static String fingerprint(Path chartDirectory, String... inputs) throws IOException {
+
+    final MessageDigest digest = HashUtils.newSha256();
+    final byte[] buffer = new byte[64 * 1024];
+    final List<Path> files;
+    try (Stream<Path> walk = Files.walk(chartDirectory)) {
+      files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    for (Path path : files) {
+      digest.update(
+          chartDirectory
+              .relativize(path)
+              .toString()
+              .replace('\\', '/')
+              .getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      try (InputStream is = Files.newInputStream(path)) {
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+        }
+      }
+      digest.update((byte) 0);
+    }
+    for (String input : inputs) {
+      digest.update((input == null ? EMPTY : input).getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+    return HashUtils.toHex(digest.digest());
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  private static class Entry {
+
+    private String fingerprint;
+    private String archive;
+  }
+}
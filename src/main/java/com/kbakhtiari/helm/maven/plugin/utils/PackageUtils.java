@@ -1,60 +1,35 @@
 package com.kbakhtiari.helm.maven.plugin.utils;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.google.gson.Gson;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.IOUtils;
 import org.apache.maven.plugin.logging.Log;
 
-import java.io.File;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Optional;
 import java.util.TreeMap;
 
+import static com.kbakhtiari.helm.maven.plugin.utils.JavaUtils.nvl;
 import static java.lang.String.format;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class PackageUtils {
 
-  private static Map mergeMaps(Map map1, Map map2) {
-
-    map2.forEach(
-        (key, value) ->
-            map1.merge(
-                key,
-                value,
-                (v1, v2) -> {
-                  if (v1 instanceof Map && v2 instanceof Map) {
-                    return mergeMaps((Map) v1, (Map) v2);
-                  }
-                  /** command line values coming with --set are preceding other values * */
-                  return v2;
-                }));
-    return map1;
-  }
-
-  private static <U> Map<String, U> removeSpecialDuplicates(Map<String, U> map) {
-
-    Map<String, U> treeMap = new TreeMap<>(map);
-    map.forEach(
-        (key, value) -> {
-          /** command line values coming with --set are preceding other values * */
-          if (key.startsWith("^") && key.endsWith("^")) {
-            String normalKey = key.replace("^", EMPTY);
-            treeMap.put(normalKey, value);
-            treeMap.remove(key);
-          }
-          if (value instanceof Map && !Objects.isNull(treeMap.get(key))) {
-            treeMap.put(key, (U) removeSpecialDuplicates((Map) value));
-          }
-        });
-    return treeMap;
-  }
+  private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
 
   public static <U> Map<String, U> flattenOverrides(Map<String, U> overrides) {
 
@@ -84,24 +59,19 @@ public class PackageUtils {
     return new Gson().fromJson(values, Map.class);
   }
 
-  public static void overrideValuesFile(
-      String inputDirectory, Map<String, ?> overrides, Log logger) {
+  public static void overrideValuesFile(String inputDirectory, ValuesMerger merger, Log logger) {
 
+    if (merger.isEmpty()) {
+      return;
+    }
     logger.info(format("rewriting the values.yaml with override values " + inputDirectory));
     try {
-      final Path path =
-          Paths.get(
-              new StringBuilder(inputDirectory)
-                  .append(File.separator)
-                  .append("values.yaml")
-                  .toString());
+      final Path path = Paths.get(inputDirectory, "values.yaml");
       if (path.toFile().exists()) {
         logger.info("values file found. will combine it with override values");
-        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
-        Map valuesFromFile = mapper.readValue(path.toFile(), Map.class);
-        final Map mergedMaps = mergeMaps(valuesFromFile, overrides);
-        final Map normalizedMap = removeSpecialDuplicates(mergedMaps);
-        mapper.writeValue(path.toFile(), normalizedMap);
+        if (!merger.apply(path)) {
+          logger.debug("values file already holds the override values, leaving it untouched");
+        }
       }
     } catch (IOException e) {
       logger.error(
@@ -109,4 +79,59 @@ public class PackageUtils {
               + e.getMessage());
     }
   }
+
+  /**
+   * returns the file name of the archive <code>helm package</code> creates for the chart, when its
+   * Chart.yaml declares a name and a version.
+   */
+  public static Optional<String> getArchiveName(String inputDirectory, String versionOverride) {
+
+    final Path path = Paths.get(inputDirectory, "Chart.yaml");
+    try {
+      final JsonNode chart = MAPPER.readTree(path.toFile());
+      if (chart == null || !chart.hasNonNull("name")) {
+        return Optional.empty();
+      }
+      final String version = nvl(versionOverride, chart.path("version").asText(EMPTY));
+      return isEmpty(version)
+          ? Optional.empty()
+          : Optional.of(format("%s-%s.tgz", chart.get("name").asText(), version));
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+  }
+
+  /** returns the name the Chart.yaml of the chart declares. */
+  public static Optional<String> getChartName(String inputDirectory) {
+
+    final Path path = Paths.get(inputDirectory, "Chart.yaml");
+    try {
+      final JsonNode chart = MAPPER.readTree(path.toFile());
+      return chart == null || !chart.hasNonNull("name")
+          ? Optional.empty()
+          : Optional.of(chart.get("name").asText());
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+  }
+
+  /** returns the Chart.yaml of the chart packaged in the archive. */
+  public static Optional<JsonNode> getArchivedChart(Path archive) {
+
+    try (TarArchiveInputStream in =
+        new TarArchiveInputStream(
+            new GzipCompressorInputStream(
+                new BufferedInputStream(Files.newInputStream(archive))))) {
+      TarArchiveEntry entry;
+      while ((entry = in.getNextTarEntry()) != null) {
+        final String[] path = entry.getName().split("/");
+        if (entry.isFile() && path.length == 2 && "Chart.yaml".equals(path[1])) {
+          return Optional.ofNullable(MAPPER.readTree(IOUtils.toByteArray(in)));
+        }
+      }
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+    return Optional.empty();
+  }
 }
@@ -0,0 +1,158 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A gzip stream compressing fixed size blocks of its input concurrently. Every block is written as
+ * a gzip member of its own; a sequence of members is a valid gzip file (RFC 1952) which helm, tar
+ * and {@link java.util.zip.GZIPInputStream} read as one. Input smaller than a block results in a
+ * single member, as written by any other gzip implementation. The header carries no timestamp nor
+ * file name, so equal input always gives equal output.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+  public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+  private static final byte[] HEADER = {
+    0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+
+  private final OutputStream out;
+  private final Executor executor;
+  private final int blockSize;
+  private final int maxPending;
+  private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+
+  private byte[] block;
+  private int size;
+  private boolean written;
+  private boolean closed;
+
+  public ParallelGzipOutputStream(OutputStream out, Executor executor) {
+
+    this(out, executor, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  public ParallelGzipOutputStream(
+      OutputStream out, Executor executor, int blockSize, int maxPending) {
+
+    this.out = out;
+    this.executor = executor;
+    this.blockSize = blockSize;
+    this.maxPending = Math.max(1, maxPending);
+    this.block = new byte[blockSize];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (len > 0) {
+      final int count = Math.min(len, blockSize - size);
+      System.arraycopy(b, off, block, size, count);
+      size += count;
+      off += count;
+      len -= count;
+      if (size == blockSize) {
+        submit();
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (size > 0 || !written) {
+        submit();
+      }
+      while (!pending.isEmpty()) {
+        writeNext();
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private void submit() throws IOException {
+
+    final byte[] data = block;
+    final int length = size;
+    pending.add(CompletableFuture.supplyAsync(() -> compress(data, length), executor));
+    block = new byte[blockSize];
+    size = 0;
+    written = true;
+    while (pending.size() > maxPending) {
+      writeNext();
+    }
+  }
+
+  private void writeNext() throws IOException {
+
+    try {
+      out.write(pending.poll().join());
+    } catch (CompletionException e) {
+      throw new IOException("Unable to compress a block", e.getCause());
+    }
+  }
+
+  private static byte[] compress(byte[] data, int length) {
+
+    final ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+    member.write(HEADER, 0, HEADER.length);
+
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      deflater.setInput(data, 0, length);
+      deflater.finish();
+      final byte[] buffer = new byte[64 * 1024];
+      while (!deflater.finished()) {
+        final int count = deflater.deflate(buffer);
+        member.write(buffer, 0, count);
+      }
+    } finally {
+      deflater.end();
+    }
+
+    final CRC32 crc = new CRC32();
+    crc.update(data, 0, length);
+    writeInt(member, (int) crc.getValue());
+    writeInt(member, length);
+    return member.toByteArray();
+  }
+
+  private static void writeInt(ByteArrayOutputStream out, int value) {
+
+    out.write(value);
+    out.write(value >>> 8);
+    out.write(value >>> 16);
+    out.write(value >>> 24);
+  }
+}
@@ -0,0 +1,112 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Runs an external command and streams its standard output and standard error, line by line and
+ * concurrently, into the given log, so neither of the pipes can fill up and block the process.
+ */
+@RequiredArgsConstructor
+public class ProcessRunner {
+
+  private final Log log;
+  private final boolean verbose;
+  /** maximum number of seconds the command may run, zero or less to wait forever. */
+  private final long timeoutSeconds;
+
+  public int run(List<String> command) throws IOException, InterruptedException, TimeoutException {
+
+    return run(command, null);
+  }
+
+  /**
+   * runs the command and returns its exit code. when an output file is given, the standard output
+   * is redirected to it by the operating system instead of being logged.
+   */
+  public int run(List<String> command, Path outputFile)
+      throws IOException, InterruptedException, TimeoutException {
+
+    final ProcessBuilder processBuilder = new ProcessBuilder(command);
+    if (outputFile != null) {
+      processBuilder.redirectOutput(outputFile.toFile());
+    }
+
+    final long start = System.nanoTime();
+    final Process process = processBuilder.start();
+    final Thread errorPump =
+        pump(
+            process.getErrorStream(),
+            line -> {
+              if (isNotBlank(line)) {
+                log.error(line);
+              }
+            },
+            "helm-stderr");
+    final Thread outputPump =
+        outputFile == null
+            ? pump(process.getInputStream(), verbose ? log::info : log::debug, "helm-stdout")
+            : null;
+
+    try {
+      if (timeoutSeconds > 0) {
+        if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+          throw new TimeoutException(
+              format("command did not finish within %d seconds", timeoutSeconds));
+        }
+      } else {
+        process.waitFor();
+      }
+      errorPump.join();
+      if (outputPump != null) {
+        outputPump.join();
+      }
+    } finally {
+      if (process.isAlive()) {
+        process.destroyForcibly();
+      }
+    }
+
+    final int exitValue = process.exitValue();
+    log.debug(
+        format(
+            "command exited with code %d after %d ms",
+            exitValue, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    return exitValue;
+  }
+
+  private Thread pump(InputStream stream, Consumer<String> consumer, String name) {
+
+    final Thread thread =
+        new Thread(
+            () -> {
+              try (BufferedReader reader =
+                  new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                  consumer.accept(line);
+                }
+              } catch (IOException e) {
+                log.debug("stopped reading the " + name + " stream", e);
+              }
+            },
+            name);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+}
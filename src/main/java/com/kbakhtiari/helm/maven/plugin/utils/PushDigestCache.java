@@ -0,0 +1,99 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers, for every chart and reference pushed from this machine, the digest of the archive that
+ * was pushed and the digest of the manifest the registry stored for it. As long as the registry
+ * still serves that manifest, pushing the same archive again would not change anything.
+ */
+public class PushDigestCache {
+
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+  private final Path file;
+  private final Log log;
+  private final Map<String, Entry> entries;
+
+  private PushDigestCache(Path file, Log log, Map<String, Entry> entries) {
+
+    this.file = file;
+    this.log = log;
+    this.entries = new ConcurrentHashMap<>(entries);
+  }
+
+  public static PushDigestCache load(Path file, Log log) {
+
+    Map<String, Entry> entries = null;
+    if (Files.exists(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        entries = GSON.fromJson(reader, new TypeToken<Map<String, Entry>>() {}.getType());
+      } catch (IOException | JsonParseException e) {
+        log.warn("Ignoring unreadable push digest cache " + file + ": " + e.getMessage());
+      }
+    }
+    return new PushDigestCache(file, log, entries == null ? new TreeMap<>() : entries);
+  }
+
+  /**
+   * returns the manifest digest recorded when the given archive of the chart was pushed to the
+   * reference, or null when a different archive or nothing was pushed to it from here.
+   */
+  public String getManifestDigest(String chart, String reference, String chartDigest) {
+
+    final Entry entry = entries.get(getKey(chart, reference));
+    return entry != null && entry.getChartDigest().equals(chartDigest)
+        ? entry.getManifestDigest()
+        : null;
+  }
+
+  public void update(String chart, String reference, String chartDigest, String manifestDigest) {
+
+    entries.put(getKey(chart, reference), new Entry(chartDigest, manifestDigest));
+  }
+
+  /** the entries are kept per chart and reference, so charts sharing a reference don't mix. */
+  private static String getKey(String chart, String reference) {
+
+    return chart + " " + reference;
+  }
+
+  public void save() throws IOException {
+
+    Files.createDirectories(file.getParent());
+    final Path temporary =
+        Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      GSON.toJson(new TreeMap<>(entries), writer);
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    log.debug("push digest cache written to " + file);
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  private static class Entry {
+
+    private String chartDigest;
+    private String manifestDigest;
+  }
+}
@@ -0,0 +1,209 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.kbakhtiari.helm.maven.plugin.pojo.HelmRepository;
+import lombok.Builder;
+import lombok.Data;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+/**
+ * Keeps the index files of chart repositories in the repository cache, where helm expects them, and
+ * refreshes them with conditional requests: the entity tag and the modification date of the last
+ * download are sent along, so an unchanged index costs a single 304 response. A gzipped copy and
+ * the response metadata are kept next to every index; indexes are requested gzip encoded and stored
+ * as received.
+ */
+@Builder
+public class RepositoryIndexCache {
+
+  private static final String GZIP_SUFFIX = ".gz";
+  private static final String METADATA_SUFFIX = ".json";
+  private static final Gson GSON = new Gson();
+
+  private final Path directory;
+  private final Log log;
+  @Builder.Default private final int connectTimeout = 10000;
+  @Builder.Default private final int readTimeout = 60000;
+  @Builder.Default private final int retries = 3;
+  @Builder.Default private final long backoff = 1000;
+
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  /** brings the index of the repository up to date and returns the index file helm reads. */
+  public Path refresh(HelmRepository repository) throws IOException {
+
+    for (int attempt = 0; ; attempt++) {
+      try {
+        return refreshOnce(repository);
+      } catch (IOException e) {
+        if (attempt >= retries) {
+          throw e;
+        }
+        final long delay = backoff << attempt;
+        log.warn(
+            format(
+                "Fetching the index of %s failed (%s), retrying in %d ms [%d/%d]",
+                repository.getName(), e.getMessage(), delay, attempt + 1, retries));
+        try {
+          TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting to retry", e);
+        }
+      }
+    }
+  }
+
+  /** number of indexes found unchanged on the server. */
+  public int getHits() {
+
+    return hits.get();
+  }
+
+  /** number of indexes downloaded. */
+  public int getMisses() {
+
+    return misses.get();
+  }
+
+  private Path refreshOnce(HelmRepository repository) throws IOException {
+
+    final Path indexFile = HelmRepositoryConfig.getIndexFile(directory, repository.getName());
+    final Path gzipFile = indexFile.resolveSibling(indexFile.getFileName() + GZIP_SUFFIX);
+    final Path metadataFile = indexFile.resolveSibling(indexFile.getFileName() + METADATA_SUFFIX);
+    final String url = repository.getUrl().replaceAll("/+$", EMPTY) + "/index.yaml";
+
+    final Metadata cached = readMetadata(metadataFile);
+    final boolean conditional =
+        cached != null && url.equals(cached.getUrl()) && Files.exists(gzipFile);
+
+    final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setConnectTimeout(connectTimeout);
+    connection.setReadTimeout(readTimeout);
+    connection.setRequestProperty("Accept-Encoding", "gzip");
+    if (isNotEmpty(repository.getUsername())) {
+      connection.setRequestProperty(
+          "Authorization",
+          "Basic "
+              + Base64.getEncoder()
+                  .encodeToString(
+                      (repository.getUsername() + ":" + repository.getPassword())
+                          .getBytes(StandardCharsets.UTF_8)));
+    }
+    if (conditional) {
+      if (isNotEmpty(cached.getEtag())) {
+        connection.setRequestProperty("If-None-Match", cached.getEtag());
+      }
+      if (isNotEmpty(cached.getLastModified())) {
+        connection.setRequestProperty("If-Modified-Since", cached.getLastModified());
+      }
+    }
+
+    final int status = connection.getResponseCode();
+    if (conditional && status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+      log.debug(format("index of %s is up to date", repository.getName()));
+      if (!Files.exists(indexFile)) {
+        unzip(gzipFile, indexFile);
+      }
+      hits.incrementAndGet();
+      return indexFile;
+    }
+    if (status != HttpURLConnection.HTTP_OK) {
+      throw new IOException(format("Unable to fetch %s: HTTP %d", url, status));
+    }
+
+    Files.createDirectories(directory);
+    final Path temporaryGzip =
+        Files.createTempFile(directory, gzipFile.getFileName().toString(), ".tmp");
+    final Path temporaryIndex =
+        Files.createTempFile(directory, indexFile.getFileName().toString(), ".tmp");
+    try {
+      if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+        try (InputStream is = connection.getInputStream()) {
+          Files.copy(is, temporaryGzip, StandardCopyOption.REPLACE_EXISTING);
+        }
+        unzip(temporaryGzip, temporaryIndex);
+      } else {
+        try (InputStream is = connection.getInputStream();
+            OutputStream gzip =
+                new GZIPOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaryGzip)));
+            OutputStream index = new BufferedOutputStream(Files.newOutputStream(temporaryIndex))) {
+          IOUtils.copy(is, new TeeOutputStream(index, gzip));
+        }
+      }
+      Files.move(temporaryGzip, gzipFile, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(temporaryIndex, indexFile, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporaryGzip);
+      Files.deleteIfExists(temporaryIndex);
+    }
+
+    final Metadata metadata = new Metadata();
+    metadata.setUrl(url);
+    metadata.setEtag(connection.getHeaderField("ETag"));
+    metadata.setLastModified(connection.getHeaderField("Last-Modified"));
+    try (Writer writer = Files.newBufferedWriter(metadataFile, StandardCharsets.UTF_8)) {
+      GSON.toJson(metadata, writer);
+    }
+    log.debug(format("downloaded the index of %s from %s", repository.getName(), url));
+    misses.incrementAndGet();
+    return indexFile;
+  }
+
+  private Metadata readMetadata(Path metadataFile) {
+
+    if (!Files.exists(metadataFile)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(metadataFile, StandardCharsets.UTF_8)) {
+      return GSON.fromJson(reader, Metadata.class);
+    } catch (IOException | JsonParseException e) {
+      log.debug("Ignoring unreadable index metadata " + metadataFile, e);
+      return null;
+    }
+  }
+
+  private static void unzip(Path gzipFile, Path target) throws IOException {
+
+    try (InputStream is =
+        new GZIPInputStream(new BufferedInputStream(Files.newInputStream(gzipFile)))) {
+      Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  @Data
+  private static class Metadata {
+
+    private String url;
+    private String etag;
+    private String lastModified;
+  }
+}
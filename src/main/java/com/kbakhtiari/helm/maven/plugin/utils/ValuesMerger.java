@@ -0,0 +1,134 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.kbakhtiari.helm.maven.plugin.utils.JavaUtils.asMap;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+
+/**
+ * Merges the override values into the values.yaml of the charts. The overrides are normalized once
+ * per build and the merge copies only the maps along the overridden paths, leaving the values read
+ * from the file untouched and sharing everything else. A values file is only written when the
+ * merged values differ from its content, and then only the overridden entries are re-emitted where
+ * the file allows it. Overrides win over the values of the file; keys wrapped in <code>^</code>,
+ * e.g. <code>^a.b^</code>, address the literal key <code>a.b</code> and replace its value instead
+ * of merging into it.
+ */
+public final class ValuesMerger {
+
+  /** thread safe once configured, and shared since it is costly to create. */
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper(new YAMLFactory()).enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+  /** the overrides, with the literal keys unwrapped. */
+  @Getter(AccessLevel.PACKAGE)
+  private final Map<String, Object> overrides;
+
+  private ValuesMerger(Map<String, Object> overrides) {
+
+    this.overrides = overrides;
+  }
+
+  public static ValuesMerger of(Map<?, ?> overrides) {
+
+    return new ValuesMerger(
+        overrides == null ? Collections.emptyMap() : normalize(asMap(overrides)));
+  }
+
+  public boolean isEmpty() {
+
+    return overrides.isEmpty();
+  }
+
+  /** the values with the overrides applied; the given values are left as they are. */
+  public Map<String, Object> merge(Map<String, Object> values) {
+
+    return merge(values == null ? Collections.emptyMap() : values, overrides);
+  }
+
+  /**
+   * applies the overrides to the values file, returns whether it had to be written. Only the
+   * overridden entries are rewritten where possible, see {@link ValuesPatcher}; otherwise the whole
+   * file is written, with its keys in sorted order.
+   */
+  public boolean apply(Path valuesFile) throws IOException {
+
+    if (isEmpty()) {
+      return false;
+    }
+    final byte[] content = Files.readAllBytes(valuesFile);
+    byte[] merged = ValuesPatcher.patch(content, overrides);
+    if (merged == null) {
+      merged = MAPPER.writeValueAsBytes(merge(asMap(MAPPER.readValue(content, Map.class))));
+    }
+    if (Arrays.equals(content, merged)) {
+      return false;
+    }
+    Files.write(valuesFile, merged);
+    return true;
+  }
+
+  private static Map<String, Object> merge(
+      Map<String, Object> values, Map<String, Object> overrides) {
+
+    final Map<String, Object> merged = new LinkedHashMap<>(values);
+    overrides.forEach(
+        (key, override) -> {
+          final Object value = merged.get(key);
+          if (override instanceof Map && value instanceof Map) {
+            merged.put(key, merge(asMap(value), asMap(override)));
+          } else {
+            merged.put(key, toValue(override));
+          }
+        });
+    return merged;
+  }
+
+  /** the value an override stands for, without the literal markers. */
+  static Object toValue(Object override) {
+
+    if (override instanceof Literal) {
+      return ((Literal) override).value;
+    }
+    if (override instanceof Map) {
+      final Map<String, Object> value = new LinkedHashMap<>();
+      asMap(override).forEach((key, nested) -> value.put(key, toValue(nested)));
+      return value;
+    }
+    return override;
+  }
+
+  private static Map<String, Object> normalize(Map<String, Object> overrides) {
+
+    final Map<String, Object> normalized = new LinkedHashMap<>();
+    overrides.forEach(
+        (key, value) -> {
+          if (key.length() > 1 && key.startsWith("^") && key.endsWith("^")) {
+            normalized.put(key.replace("^", EMPTY), new Literal(value));
+          } else if (!(normalized.get(key) instanceof Literal)) {
+            normalized.put(key, value instanceof Map ? normalize(asMap(value)) : value);
+          }
+        });
+    return normalized;
+  }
+
+  /** an override which replaces the value instead of being merged into it. */
+  @RequiredArgsConstructor
+  static final class Literal {
+
+    private final Object value;
+  }
+}
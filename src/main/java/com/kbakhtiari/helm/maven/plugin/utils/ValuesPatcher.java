@@ -0,0 +1,288 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
+import lombok.RequiredArgsConstructor;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.kbakhtiari.helm.maven.plugin.utils.JavaUtils.asMap;
+import static org.apache.commons.lang3.StringUtils.removeEnd;
+import static org.apache.commons.lang3.StringUtils.repeat;
+
+/**
+ * Applies override values to a values file by editing its text. The YAML event stream is walked
+ * once, descending only into the mappings the overrides address; the entries they replace are
+ * re-emitted and new entries are appended to their mapping, while every other byte of the file,
+ * comments and order included, is copied verbatim. Documents the text can't be safely edited in,
+ * i.e. with anchors, aliases, merge keys, flow mappings on the overridden paths or more than one
+ * document, are left to a full rewrite.
+ */
+final class ValuesPatcher {
+
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper(
+          new YAMLFactory()
+              .disable(YAMLGenerator.Feature.WRITE_DOC_START_MARKER)
+              .disable(YAMLGenerator.Feature.SPLIT_LINES));
+
+  private final String text;
+  private final Iterator<Event> events;
+  private final boolean supplementary;
+  /** the line break of the text, as found at the end of its first line. */
+  private final String lineSeparator;
+
+  private final List<Edit> edits = new ArrayList<>();
+
+  private ValuesPatcher(String text) {
+
+    this.text = text;
+    this.events = new Yaml().parse(new StringReader(text)).iterator();
+    this.supplementary = text.length() != text.codePointCount(0, text.length());
+    final int lineBreak = text.indexOf('\n');
+    this.lineSeparator = lineBreak > 0 && text.charAt(lineBreak - 1) == '\r' ? "\r\n" : "\n";
+  }
+
+  /**
+   * the content with the normalized overrides of a {@link ValuesMerger} applied, or null when it
+   * has to be rewritten as a whole.
+   */
+  static byte[] patch(byte[] content, Map<String, Object> overrides) {
+
+    try {
+      final String text =
+          StandardCharsets.UTF_8
+              .newDecoder()
+              .onMalformedInput(CodingErrorAction.REPORT)
+              .onUnmappableCharacter(CodingErrorAction.REPORT)
+              .decode(ByteBuffer.wrap(content))
+              .toString();
+      return new ValuesPatcher(text).patch(overrides).getBytes(StandardCharsets.UTF_8);
+    } catch (CharacterCodingException | YAMLException | Unpatchable e) {
+      return null;
+    }
+  }
+
+  private String patch(Map<String, Object> overrides) {
+
+    expect(next(), StreamStartEvent.class);
+    expect(next(), DocumentStartEvent.class);
+    final Event root = next();
+    if (!(root instanceof MappingStartEvent) || isFlow(root)) {
+      throw new Unpatchable();
+    }
+    patchMapping(overrides);
+    next();
+    expect(next(), StreamEndEvent.class);
+
+    if (edits.isEmpty()) {
+      return text;
+    }
+    final StringBuilder patched = new StringBuilder(text.length() + 256);
+    int copied = 0;
+    for (Edit edit : edits) {
+      patched.append(text, copied, edit.start).append(edit.replacement);
+      copied = edit.end;
+    }
+    return patched.append(text, copied, text.length()).toString();
+  }
+
+  /** patches the entries of the block mapping just started, returns the end of its content. */
+  private int patchMapping(Map<String, Object> overrides) {
+
+    final Set<String> seen = new HashSet<>();
+    int column = 0;
+    int end = -1;
+    Event event;
+    while (!((event = next()) instanceof MappingEndEvent)) {
+      if (!(event instanceof ScalarEvent) || isAnchored(event)) {
+        throw new Unpatchable();
+      }
+      final String key = ((ScalarEvent) event).getValue();
+      final int start = index(event.getStartMark());
+      if (end < 0) {
+        column = event.getStartMark().getColumn();
+      }
+      if ("<<".equals(key) || !seen.add(key)) {
+        throw new Unpatchable();
+      }
+      final Event value = next();
+      if (!overrides.containsKey(key)) {
+        end = skip(value);
+        continue;
+      }
+      final Object override = overrides.get(key);
+      if (override instanceof Map && value instanceof MappingStartEvent) {
+        if (isFlow(value) || isAnchored(value)) {
+          throw new Unpatchable();
+        }
+        end = patchMapping(asMap(override));
+      } else {
+        end = skip(value);
+        replace(start, end, render(key, ValuesMerger.toValue(override), column));
+      }
+    }
+
+    final int lineEnd = text.indexOf('\n', end);
+    int insertion = lineEnd < 0 ? text.length() : lineEnd;
+    if (insertion > end && text.charAt(insertion - 1) == '\r') {
+      insertion--;
+    }
+    for (Map.Entry<String, Object> entry : overrides.entrySet()) {
+      if (!seen.contains(entry.getKey())) {
+        edits.add(
+            new Edit(
+                insertion,
+                insertion,
+                lineSeparator
+                    + repeat(' ', column)
+                    + render(entry.getKey(), ValuesMerger.toValue(entry.getValue()), column)));
+      }
+    }
+    return end;
+  }
+
+  /** skips the node just started, returns the end of its content. */
+  private int skip(Event start) {
+
+    if (isAnchored(start)) {
+      throw new Unpatchable();
+    }
+    if (start instanceof ScalarEvent) {
+      return scalarEnd((ScalarEvent) start);
+    }
+    if (!(start instanceof CollectionStartEvent)) {
+      return index(start.getEndMark());
+    }
+    int end = index(start.getEndMark());
+    Event event;
+    while (!((event = next()) instanceof CollectionEndEvent)) {
+      end = skip(event);
+    }
+    return isFlow(start) ? index(event.getEndMark()) : end;
+  }
+
+  /**
+   * the end of the scalar. Block scalars end after the line breaks and blank lines following them,
+   * which are moved behind what is inserted after them, so those keeping their trailing blank lines
+   * can't be patched around.
+   */
+  private int scalarEnd(ScalarEvent scalar) {
+
+    int end = index(scalar.getEndMark());
+    if (scalar.getScalarStyle() != DumperOptions.ScalarStyle.LITERAL
+        && scalar.getScalarStyle() != DumperOptions.ScalarStyle.FOLDED) {
+      return end;
+    }
+    if (scalar.getValue().endsWith("\n\n")) {
+      throw new Unpatchable();
+    }
+    while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+      end--;
+    }
+    return end;
+  }
+
+  private void replace(int start, int end, String replacement) {
+
+    if (!text.regionMatches(start, replacement, 0, replacement.length())
+        || replacement.length() != end - start) {
+      edits.add(new Edit(start, end, replacement));
+    }
+  }
+
+  /**
+   * the entry as a block mapping entry, its continuation lines indented to the column and broken
+   * like the lines of the text.
+   */
+  private String render(String key, Object value, int column) {
+
+    try {
+      return removeEnd(MAPPER.writeValueAsString(Collections.singletonMap(key, value)), "\n")
+          .replace("\n", lineSeparator + repeat(' ', column));
+    } catch (JsonProcessingException e) {
+      throw new Unpatchable();
+    }
+  }
+
+  private Event next() {
+
+    if (!events.hasNext()) {
+      throw new Unpatchable();
+    }
+    final Event event = events.next();
+    if (event.is(Event.ID.Alias)) {
+      throw new Unpatchable();
+    }
+    return event;
+  }
+
+  private static void expect(Event event, Class<? extends Event> type) {
+
+    if (!type.isInstance(event)) {
+      throw new Unpatchable();
+    }
+  }
+
+  private static boolean isFlow(Event event) {
+
+    return event instanceof CollectionStartEvent && ((CollectionStartEvent) event).isFlow();
+  }
+
+  private static boolean isAnchored(Event event) {
+
+    return event instanceof NodeEvent && ((NodeEvent) event).getAnchor() != null;
+  }
+
+  /** the index of the mark in the text; marks count code points rather than chars. */
+  private int index(Mark mark) {
+
+    return supplementary ? text.offsetByCodePoints(0, mark.getIndex()) : mark.getIndex();
+  }
+
+  @RequiredArgsConstructor
+  private static final class Edit {
+
+    private final int start;
+    private final int end;
+    private final String replacement;
+  }
+
+  /** thrown when the text can't be patched in place. */
+  private static final class Unpatchable extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private Unpatchable() {
+
+      super(null, null, false, false);
+    }
+  }
+}
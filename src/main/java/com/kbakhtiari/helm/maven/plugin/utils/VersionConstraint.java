@@ -0,0 +1,212 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A version constraint of a chart dependency, in the syntax helm accepts: alternatives separated by
+ * <code>||</code>, each a list of comparisons separated by commas or spaces (<code>=</code>, <code>
+ * !=</code>, <code>&gt;</code>, <code>&gt;=</code>, <code>&lt;</code>, <code>&lt;=</code>, <code>~
+ * </code>, <code>^</code>), hyphen ranges and <code>x</code>, <code>X</code> or <code>*</code>
+ * wildcards. Pre-release versions only satisfy alternatives which mention a pre-release.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class VersionConstraint implements Predicate<ChartVersion> {
+
+  private static final Pattern HYPHEN_RANGE = Pattern.compile("(\\S+)\\s+-\\s+(\\S+)");
+  private static final Pattern TERM =
+      Pattern.compile(
+          "(!=|>=|=>|<=|=<|~>|[=><~^])?\\s*(v?[0-9xX*]+(?:\\.[0-9xX*]+)?(?:\\.[0-9xX*]+)?"
+              + "(?:-[0-9A-Za-z.-]+)?(?:\\+[0-9A-Za-z.-]+)?)");
+  private static final Pattern PARTIAL =
+      Pattern.compile(
+          "v?([0-9]+|[xX*])(?:\\.([0-9]+|[xX*]))?(?:\\.([0-9]+|[xX*]))?(?:-([0-9A-Za-z.-]+))?(?:\\+.*)?");
+
+  private final String text;
+  private final List<Alternative> alternatives;
+
+  public static VersionConstraint parse(String text) {
+
+    final List<Alternative> alternatives = new ArrayList<>();
+    for (String alternative : (text == null ? "" : text).split("\\|\\|")) {
+      final String normalized =
+          HYPHEN_RANGE.matcher(alternative.trim()).replaceAll(">= $1, <= $2").replace(',', ' ');
+      final List<Predicate<ChartVersion>> terms = new ArrayList<>();
+      boolean prerelease = false;
+      final Matcher matcher = TERM.matcher(normalized);
+      int end = 0;
+      while (matcher.find()) {
+        if (!normalized.substring(end, matcher.start()).trim().isEmpty()) {
+          throw new IllegalArgumentException("Invalid version constraint: " + text);
+        }
+        final Partial version = Partial.parse(matcher.group(2), text);
+        terms.add(toPredicate(matcher.group(1) == null ? "=" : matcher.group(1), version));
+        prerelease |= version.prerelease != null;
+        end = matcher.end();
+      }
+      if (!normalized.substring(end).trim().isEmpty()) {
+        throw new IllegalArgumentException("Invalid version constraint: " + text);
+      }
+      alternatives.add(new Alternative(terms, prerelease));
+    }
+    return new VersionConstraint(text, alternatives);
+  }
+
+  @Override
+  public boolean test(ChartVersion version) {
+
+    for (Alternative alternative : alternatives) {
+      if (alternative.test(version)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Predicate<ChartVersion> toPredicate(String operator, Partial version) {
+
+    final ChartVersion lower = version.lower();
+    switch (operator) {
+      case "=":
+        return version.parts == 3 ? lower::equals : between(lower, version.next(version.parts));
+      case "!=":
+        return version.parts == 3
+            ? candidate -> !lower.equals(candidate)
+            : between(lower, version.next(version.parts)).negate();
+      case ">":
+        return version.parts == 3
+            ? candidate -> candidate.compareTo(lower) > 0
+            : atLeast(version.next(version.parts));
+      case ">=":
+      case "=>":
+        return atLeast(lower);
+      case "<":
+        return below(lower);
+      case "<=":
+      case "=<":
+        return version.parts == 3
+            ? candidate -> candidate.compareTo(lower) <= 0
+            : below(version.next(version.parts));
+      case "~":
+      case "~>":
+        return between(lower, version.next(Math.min(2, version.parts)));
+      case "^":
+        if (version.parts == 0) {
+          return atLeast(lower);
+        }
+        if (version.major > 0 || version.parts == 1) {
+          return between(lower, version.next(1));
+        }
+        if (version.minor > 0 || version.parts == 2) {
+          return between(lower, version.next(2));
+        }
+        return between(lower, version.next(3));
+      default:
+        throw new IllegalArgumentException("Unknown operator " + operator);
+    }
+  }
+
+  private static Predicate<ChartVersion> atLeast(ChartVersion lower) {
+
+    return lower == null ? candidate -> true : candidate -> candidate.compareTo(lower) >= 0;
+  }
+
+  private static Predicate<ChartVersion> below(ChartVersion upper) {
+
+    return upper == null ? candidate -> true : candidate -> candidate.compareTo(upper) < 0;
+  }
+
+  private static Predicate<ChartVersion> between(ChartVersion lower, ChartVersion upper) {
+
+    return upper == null
+        ? atLeast(lower)
+        : candidate -> candidate.compareTo(lower) >= 0 && candidate.compareTo(upper) < 0;
+  }
+
+  @Override
+  public String toString() {
+
+    return text;
+  }
+
+  @RequiredArgsConstructor
+  private static final class Alternative {
+
+    private final List<Predicate<ChartVersion>> terms;
+    private final boolean prerelease;
+
+    private boolean test(ChartVersion version) {
+
+      if (version.isPrerelease() && !prerelease) {
+        return false;
+      }
+      for (Predicate<ChartVersion> term : terms) {
+        if (!term.test(version)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** a version which may lack its minor and patch numbers or have wildcards in their place. */
+  @RequiredArgsConstructor
+  private static final class Partial {
+
+    private final int major;
+    private final int minor;
+    private final int patch;
+    /** how many of the numbers are given, the ones after a wildcard don't count. */
+    private final int parts;
+
+    private final String prerelease;
+
+    private static Partial parse(String text, String constraint) {
+
+      final Matcher matcher = PARTIAL.matcher(text);
+      if (!matcher.matches()) {
+        throw new IllegalArgumentException("Invalid version constraint: " + constraint);
+      }
+      final int[] numbers = new int[3];
+      int parts = 0;
+      while (parts < 3 && isNumber(matcher.group(parts + 1))) {
+        numbers[parts] = Integer.parseInt(matcher.group(parts + 1));
+        parts++;
+      }
+      return new Partial(
+          numbers[0], numbers[1], numbers[2], parts, parts == 3 ? matcher.group(4) : null);
+    }
+
+    private static boolean isNumber(String part) {
+
+      return part != null && Character.isDigit(part.charAt(0));
+    }
+
+    /** the lowest version matching this one. */
+    private ChartVersion lower() {
+
+      return ChartVersion.of(major, minor, patch, prerelease);
+    }
+
+    /** the version after this one with only the given number of parts kept, null for none. */
+    private ChartVersion next(int keep) {
+
+      switch (keep) {
+        case 0:
+          return null;
+        case 1:
+          return ChartVersion.of(major + 1, 0, 0, null);
+        case 2:
+          return ChartVersion.of(major, minor + 1, 0, null);
+        default:
+          return ChartVersion.of(major, minor, patch + 1, null);
+      }
+    }
+  }
+}
@@ -13,6 +13,8 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 import org.mockito.ArgumentCaptor;
 
 import java.io.File;
@@ -26,7 +28,9 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static java.io.File.separator;
 import static java.lang.String.format;
@@ -44,6 +48,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
@@ -250,6 +255,32 @@ class AbstractHelmMojoTest {
       verify(spyLog).error(anyString());
     }
 
+    @Test
+    @EnabledOnOs({OS.LINUX, OS.MAC})
+    void checkTimeout() {
+
+      subjectSpy.setProcessTimeout(1);
+
+      final MojoExecutionException exception =
+          assertThrows(
+              MojoExecutionException.class,
+              () -> {
+                subjectSpy.callCli("sleep 10", "cannot sleep");
+              });
+      assertTrue(exception.getCause() instanceof TimeoutException);
+    }
+
+    @Test
+    @EnabledOnOs({OS.LINUX, OS.MAC})
+    void checkOutputFile() throws MojoExecutionException, IOException {
+
+      final Path outputFile = testPath.resolve("output.txt");
+
+      subjectSpy.callCli("echo hello", "cannot echo hello", outputFile);
+
+      assertEquals(asList("hello"), Files.readAllLines(outputFile));
+    }
+
     @Test
     void checkBadCommand() throws InterruptedException {
 
@@ -261,6 +292,80 @@ class AbstractHelmMojoTest {
     }
   }
 
+  @Nested
+  class ForEachChart {
+
+    private final List<String> charts = asList("chart1", "chart2", "chart3", "chart4");
+
+    @BeforeEach
+    void init() {
+      subjectSpy.setThreads(2);
+    }
+
+    @Test
+    void processesEveryChart() throws MojoExecutionException {
+
+      final List<String> processed = new CopyOnWriteArrayList<>();
+
+      subjectSpy.forEachChart(charts, processed::add);
+
+      assertTrue(processed.containsAll(charts), "every chart should have been processed");
+      assertEquals(charts.size(), processed.size());
+    }
+
+    @Test
+    void processesChartsOneAfterTheOtherWithOneThread() throws MojoExecutionException {
+
+      final List<String> threads = new CopyOnWriteArrayList<>();
+
+      subjectSpy.forEachChart(charts, 1, chart -> threads.add(Thread.currentThread().getName()));
+
+      assertEquals(charts.size(), threads.size());
+      assertTrue(threads.stream().allMatch(Thread.currentThread().getName()::equals));
+    }
+
+    @Test
+    void aggregatesFailuresWhenFailFastIsDisabled() {
+
+      final List<String> processed = new CopyOnWriteArrayList<>();
+      subjectSpy.setFailFast(false);
+
+      final MojoExecutionException exception =
+          assertThrows(
+              MojoExecutionException.class,
+              () ->
+                  subjectSpy.forEachChart(
+                      charts,
+                      chart -> {
+                        processed.add(chart);
+                        if (chart.equals("chart1") || chart.equals("chart3")) {
+                          throw new MojoExecutionException("failed " + chart);
+                        }
+                      }));
+
+      assertEquals(charts.size(), processed.size(), "every chart should have been processed");
+      assertTrue(exception.getMessage().startsWith("2 of 4 charts failed"));
+    }
+
+    @Test
+    void rethrowsFirstFailureWhenFailFastIsEnabled() {
+
+      subjectSpy.setFailFast(true);
+
+      final MojoExecutionException exception =
+          assertThrows(
+              MojoExecutionException.class,
+              () ->
+                  subjectSpy.forEachChart(
+                      charts,
+                      chart -> {
+                        throw new MojoExecutionException("failed " + chart);
+                      }));
+
+      assertTrue(exception.getMessage().startsWith("failed chart"));
+    }
+  }
+
   @Nested
   class GetChartDirectories {
 
@@ -310,6 +415,44 @@ class AbstractHelmMojoTest {
               chartDirectories, excludeDir2));
     }
 
+    @Test
+    void getChartDirectoriesFindsChartsNestedBelowExcludedCharts()
+        throws MojoExecutionException, IOException {
+
+      final Path chart = Files.createDirectories(testPath.resolve("charts/app"));
+      Files.createFile(chart.resolve("Chart.yaml"));
+      Files.createDirectories(chart.resolve("charts/sub"));
+      Files.createFile(chart.resolve("charts/sub/Chart.yaml"));
+      Files.createDirectories(testPath.resolve("charts/.git/chart"));
+      Files.createFile(testPath.resolve("charts/.git/chart/Chart.yaml"));
+      subjectSpy.setExcludes(new String[] {chart.toString()});
+
+      assertEquals(
+          asList(chart.resolve("charts/sub").toString()),
+          subjectSpy.getChartDirectories(testPath.resolve("charts").toString()));
+    }
+
+    @Test
+    void getChartDirectoriesNeverListsExcludedSubtrees()
+        throws MojoExecutionException, IOException {
+
+      final Log spyLog = spy(subjectSpy.getLog());
+      subjectSpy.setLog(spyLog);
+      final Path chart = Files.createDirectories(testPath.resolve("charts/app"));
+      Files.createFile(chart.resolve("Chart.yaml"));
+      final Path nodeModules = Files.createDirectories(chart.resolve("node_modules"));
+      Files.createDirectories(nodeModules.resolve("module/chart"));
+      Files.createFile(nodeModules.resolve("module/chart/Chart.yaml"));
+      subjectSpy.setExcludes(new String[] {"**/node_modules/**"});
+
+      assertEquals(
+          asList(chart.toString()),
+          subjectSpy.getChartDirectories(testPath.resolve("charts").toString()));
+      verify(spyLog).debug("Skip pruned directory " + nodeModules);
+      verify(spyLog, never())
+          .debug("Skip excluded directory " + nodeModules.resolve("module/chart"));
+    }
+
     @Test
     void getChartDirectoriesReturnChartDirectories() throws MojoExecutionException {
 
@@ -352,6 +495,41 @@ class AbstractHelmMojoTest {
       verify(spyLog).warn(anyString());
       assertTrue(logCapture.getValue().contains(emptyDir));
     }
+
+    @Test
+    void getChartDirectoriesSkipsTemplatesAndStopsAtChart()
+        throws MojoExecutionException, IOException {
+
+      final Path chart = Files.createDirectories(testPath.resolve("charts/app"));
+      Files.createFile(chart.resolve("Chart.yaml"));
+      Files.createDirectories(chart.resolve("templates"));
+      Files.createFile(chart.resolve("templates/Chart.yaml"));
+      Files.createDirectories(chart.resolve("charts/sub"));
+      Files.createFile(chart.resolve("charts/sub/Chart.yaml"));
+
+      assertEquals(
+          asList(chart.toString(), chart.resolve("charts/sub").toString()),
+          subjectSpy.getChartDirectories(testPath.resolve("charts").toString()));
+
+      subjectSpy.setStopAtChart(true);
+      assertEquals(
+          asList(chart.toString()),
+          subjectSpy.getChartDirectories(testPath.resolve("charts").toString()));
+    }
+
+    @Test
+    @EnabledOnOs({OS.LINUX, OS.MAC})
+    void getChartDirectoriesSkipsSymlinkLoops() throws MojoExecutionException, IOException {
+
+      final Path chart = Files.createDirectories(testPath.resolve("charts/app"));
+      Files.createFile(chart.resolve("Chart.yaml"));
+      Files.createSymbolicLink(chart.resolve("loop"), testPath.resolve("charts"));
+      subjectSpy.setParallelScan(true);
+
+      assertEquals(
+          asList(chart.toString()),
+          subjectSpy.getChartDirectories(testPath.resolve("charts").toString()));
+    }
   }
 
   @Nested
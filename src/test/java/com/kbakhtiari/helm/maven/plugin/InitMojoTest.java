@@ -3,6 +3,11 @@ package com.kbakhtiari.helm.maven.plugin;
 import com.kbakhtiari.helm.maven.plugin.junit.MojoExtension;
 import com.kbakhtiari.helm.maven.plugin.junit.MojoProperty;
 import com.kbakhtiari.helm.maven.plugin.junit.SystemPropertyExtension;
+import com.kbakhtiari.helm.maven.plugin.pojo.HelmRepository;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.plexus.util.Os;
 import org.junit.jupiter.api.Disabled;
@@ -15,7 +20,9 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentCaptor;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.net.InetSocketAddress;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -24,6 +31,8 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import static com.kbakhtiari.helm.maven.plugin.utils.Constants.MojoDefaultConstants.HELM_VERSION;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
@@ -39,6 +48,7 @@ import static org.mockito.Mockito.doReturn;
 @MojoProperty(
     name = "helmDownloadUrl",
     value = "https://get.helm.sh/helm-v3.0.0-linux-amd64.tar.gz")
+@MojoProperty(name = "downloadBackoff", value = "0")
 class InitMojoTest {
 
   @ParameterizedTest
@@ -174,6 +184,102 @@ class InitMojoTest {
     mojo.execute();
   }
 
+  @Test
+  void customDownloadUrlWithoutChecksumIsNotVerified(InitMojo mojo) throws Exception {
+
+    final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    try (TarArchiveOutputStream tar =
+        new TarArchiveOutputStream(new GzipCompressorOutputStream(archive))) {
+      final byte[] helm = "#!/bin/sh\n".getBytes(UTF_8);
+      final TarArchiveEntry entry = new TarArchiveEntry("linux-amd64/helm");
+      entry.setSize(helm.length);
+      tar.putArchiveEntry(entry);
+      tar.write(helm);
+      tar.closeArchiveEntry();
+    }
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          final boolean found = exchange.getRequestURI().getPath().endsWith(".tar.gz");
+          exchange.sendResponseHeaders(found ? 200 : 404, found ? archive.size() : -1);
+          if (found) {
+            exchange.getResponseBody().write(archive.toByteArray());
+          }
+          exchange.close();
+        });
+    server.start();
+    final Path testPath = Files.createTempDirectory("helm");
+    try {
+      mojo.setHelmDownloadUrl(
+          "http://localhost:" + server.getAddress().getPort() + "/mirror/helm.tar.gz");
+      mojo.setHelmExecutableDirectory(testPath.toString());
+      mojo.setUseCache(false);
+      mojo.setVerifyChecksum(true);
+
+      mojo.downloadAndUnpackHelm();
+
+      assertEquals("#!/bin/sh\n", new String(Files.readAllBytes(testPath.resolve("helm")), UTF_8));
+    } finally {
+      server.stop(0);
+      deleteQuietly(testPath.toFile());
+    }
+  }
+
+  @Test
+  void batchRepositoriesWritesConfigAndFetchesIndexes(InitMojo mojo) throws Exception {
+
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          final byte[] body =
+              ("apiVersion: v1\n# " + exchange.getRequestURI().getPath() + "\n").getBytes(UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          exchange.getResponseBody().write(body);
+          exchange.close();
+        });
+    server.start();
+    final Path testPath = Files.createTempDirectory("repositories");
+    try {
+      final String url = "http://localhost:" + server.getAddress().getPort();
+      ArgumentCaptor<String> helmCommandCaptor = ArgumentCaptor.forClass(String.class);
+      doNothing().when(mojo).callCli(helmCommandCaptor.capture(), anyString());
+      doReturn(Paths.get("dummy/path/to/helm").toAbsolutePath()).when(mojo).getHelmExecutablePath();
+      mojo.setUseLocalHelmBinary(true);
+      mojo.setBatchRepositories(true);
+      mojo.setRepositoryConfig(testPath.resolve("config/repositories.yaml").toString());
+      mojo.setRepositoryCache(testPath.resolve("cache").toString());
+      mojo.setHelmExtraRepos(
+          new HelmRepository[] {
+            HelmRepository.builder().name("first").url(url + "/first/").build(),
+            HelmRepository.builder()
+                .name("second")
+                .url(url + "/second")
+                .username("user")
+                .password("secret")
+                .build()
+          });
+
+      mojo.execute();
+
+      final String config =
+          new String(Files.readAllBytes(testPath.resolve("config/repositories.yaml")), UTF_8);
+      assertTrue(config.contains("name: first"), config);
+      assertTrue(config.contains("url: " + url + "/second"), config);
+      assertTrue(config.contains("username: user"), config);
+      assertEquals(
+          "apiVersion: v1\n# /second/index.yaml\n",
+          new String(Files.readAllBytes(testPath.resolve("cache/second-index.yaml")), UTF_8));
+      assertTrue(Files.exists(testPath.resolve("cache/first-index.yaml")));
+      assertTrue(
+          helmCommandCaptor.getAllValues().stream().noneMatch(cmd -> cmd.contains("repo add")));
+    } finally {
+      server.stop(0);
+      deleteQuietly(testPath.toFile());
+    }
+  }
+
   private boolean isOSUnix() {
     return System.getProperty("os.name").matches(".*n[i|u]x.*");
   }
@@ -4,17 +4,31 @@ import com.kbakhtiari.helm.maven.plugin.junit.MojoExtension;
 import com.kbakhtiari.helm.maven.plugin.junit.MojoProperty;
 import com.kbakhtiari.helm.maven.plugin.junit.SystemPropertyExtension;
 import com.kbakhtiari.helm.maven.plugin.pojo.ValueOverride;
+import com.kbakhtiari.helm.maven.plugin.utils.LintReport;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.plexus.util.Os;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @MojoProperty(name = "chartVersion", value = "0.0.1")
 @MojoProperty(name = "chartDirectory", value = "junit-chart")
@@ -24,6 +38,8 @@ import static org.mockito.Mockito.doReturn;
     value = "https://get.helm.sh/helm-v2.14.3-linux-amd64.tar.gz")
 public class LintMojoTest {
 
+  private static final String REPORT_DIRECTORY = "target/surefire/LintMojoTest/reports";
+
   @Test
   public void valuesFile(LintMojo mojo) throws Exception {
 
@@ -34,7 +50,7 @@ public class LintMojoTest {
         Paths.get(getClass().getResource("Chart.yaml").toURI()).getParent().toString());
 
     ArgumentCaptor<String> helmCommandCaptor = ArgumentCaptor.forClass(String.class);
-    doNothing().when(mojo).callCli(helmCommandCaptor.capture(), anyString());
+    doNothing().when(mojo).callCli(helmCommandCaptor.capture(), anyString(), any(Path.class));
     doReturn(Paths.get("helm" + (Os.OS_FAMILY == Os.FAMILY_WINDOWS ? ".exe" : "")))
         .when(mojo)
         .getHelmExecutablePath();
@@ -42,5 +58,109 @@ public class LintMojoTest {
     mojo.execute();
 
     assertTrue(helmCommandCaptor.getValue().contains("--values overrideValues.yaml"));
+    assertTrue(
+        helmCommandCaptor.getAllValues().stream()
+            .anyMatch(command -> command.contains(" " + mojo.getChartDirectory() + " ")));
+    assertFalse(helmCommandCaptor.getValue().contains("--generate-name"));
+  }
+
+  @Test
+  @MojoProperty(name = "reportDirectory", value = REPORT_DIRECTORY)
+  public void lintsAllChartsBeforeFailing(LintMojo mojo) throws Exception {
+
+    final Path charts = Files.createTempDirectory("charts");
+    try {
+      for (String chart : new String[] {"a", "b", "c"}) {
+        Files.createDirectories(charts.resolve(chart));
+        Files.write(
+            charts.resolve(chart).resolve("Chart.yaml"),
+            ("apiVersion: v2\nname: " + chart + "\nversion: 0.1.0\n").getBytes(UTF_8));
+      }
+      mojo.setChartDirectory(charts.toString());
+      mojo.setThreads(3);
+      mojo.setValues(new ValueOverride());
+      doReturn(Paths.get("helm")).when(mojo).getHelmExecutablePath();
+      doAnswer(
+              invocation -> {
+                final String command = invocation.getArgument(0);
+                final Path output = invocation.getArgument(2);
+                final boolean failing = command.contains(charts.resolve("b") + " ");
+                Files.write(
+                    output,
+                    (failing ? "[ERROR] templates/: parse error\n" : "1 chart(s) linted\n")
+                        .getBytes(UTF_8));
+                if (failing) {
+                  throw new MojoExecutionException(invocation.getArgument(1));
+                }
+                return null;
+              })
+          .when(mojo)
+          .callCli(anyString(), anyString(), any(Path.class));
+
+      final MojoExecutionException exception =
+          assertThrows(MojoExecutionException.class, mojo::execute);
+
+      assertTrue(exception.getMessage().contains("1 of 3 charts"));
+      verify(mojo, times(3)).callCli(anyString(), anyString(), any(Path.class));
+      final Path reports = Paths.get(REPORT_DIRECTORY);
+      final String xml =
+          new String(Files.readAllBytes(reports.resolve(LintReport.XML_REPORT)), UTF_8);
+      assertTrue(xml.contains("tests=\"3\" failures=\"1\""));
+      assertTrue(xml.contains("[ERROR] templates/: parse error"));
+      assertTrue(Files.exists(reports.resolve(LintReport.JSON_REPORT)));
+    } finally {
+      FileUtils.deleteQuietly(charts.toFile());
+    }
+  }
+
+  @Test
+  @MojoProperty(name = "preLint", value = "true")
+  public void forksHelmOnlyForChartsPassingThePreLint(LintMojo mojo) throws Exception {
+
+    final Path charts = Files.createTempDirectory("charts");
+    try {
+      Files.createDirectories(charts.resolve("valid"));
+      Files.write(
+          charts.resolve("valid/Chart.yaml"),
+          "apiVersion: v2\nname: valid\nversion: 0.1.0\n".getBytes(UTF_8));
+      Files.createDirectories(charts.resolve("broken"));
+      Files.write(
+          charts.resolve("broken/Chart.yaml"), "apiVersion: v2\nname: broken\n".getBytes(UTF_8));
+      mojo.setChartDirectory(charts.toString());
+      mojo.setValues(new ValueOverride());
+      doReturn(Paths.get("helm")).when(mojo).getHelmExecutablePath();
+      final ArgumentCaptor<String> helmCommandCaptor = ArgumentCaptor.forClass(String.class);
+      doNothing().when(mojo).callCli(helmCommandCaptor.capture(), anyString(), any(Path.class));
+
+      final MojoExecutionException exception =
+          assertThrows(MojoExecutionException.class, mojo::execute);
+
+      assertTrue(exception.getMessage().contains("1 of 2 charts"));
+      assertEquals(1, helmCommandCaptor.getAllValues().size());
+      assertTrue(helmCommandCaptor.getValue().contains(charts.resolve("valid").toString()));
+    } finally {
+      FileUtils.deleteQuietly(charts.toFile());
+    }
+  }
+
+  @Test
+  @MojoProperty(name = "preLintOnly", value = "true")
+  public void neverForksHelmWithPreLintOnly(LintMojo mojo) throws Exception {
+
+    final Path charts = Files.createTempDirectory("charts");
+    try {
+      Files.createDirectories(charts.resolve("valid"));
+      Files.write(
+          charts.resolve("valid/Chart.yaml"),
+          "apiVersion: v2\nname: valid\nversion: 0.1.0\n".getBytes(UTF_8));
+      mojo.setChartDirectory(charts.toString());
+      mojo.setValues(new ValueOverride());
+
+      mojo.execute();
+
+      verify(mojo, never()).callCli(anyString(), anyString(), any(Path.class));
+    } finally {
+      FileUtils.deleteQuietly(charts.toFile());
+    }
   }
 }
@@ -6,20 +6,27 @@ import com.kbakhtiari.helm.maven.plugin.junit.MojoExtension;
 import com.kbakhtiari.helm.maven.plugin.junit.MojoProperty;
 import com.kbakhtiari.helm.maven.plugin.junit.SystemPropertyExtension;
 import com.kbakhtiari.helm.maven.plugin.pojo.ValueOverride;
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.io.File;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @MojoProperty(name = "chartVersion", value = "0.0.1")
@@ -80,4 +87,82 @@ class PackageMojoTest {
 
     verify(mojo, atLeastOnce()).callCli(contains("helm"), anyString());
   }
+
+  @Test
+  void unchangedChartIsNotPackagedAgain(PackageMojo mojo) throws Exception {
+
+    final Path chart = Files.createTempDirectory("chart");
+    try {
+      Files.write(
+          chart.resolve("Chart.yaml"), "apiVersion: v2\nname: app\nversion: 0.1.0\n".getBytes());
+      Files.write(chart.resolve("values.yaml"), "replicaCount: 1\n".getBytes());
+
+      ValueOverride valueOverride = new ValueOverride();
+      valueOverride.setOverrides(new Gson().toJson(ImmutableMap.of("replicaCount", "2")));
+      doReturn(chart.toString()).when(mojo).getChartDirectory();
+      doReturn(valueOverride).when(mojo).getValues();
+      doReturn(Paths.get("helm")).when(mojo).getHelmExecutablePath();
+      doAnswer(
+              invocation -> {
+                Files.createDirectories(Paths.get(mojo.getOutputDirectory()));
+                return Files.write(
+                    Paths.get(mojo.getOutputDirectory(), "app-0.0.1.tgz"), new byte[0]);
+              })
+          .when(mojo)
+          .callCli(contains("helm"), anyString());
+      mojo.setIncremental(true);
+
+      mojo.execute();
+      mojo.execute();
+
+      verify(mojo, times(1)).callCli(contains("helm"), anyString());
+
+      Files.write(chart.resolve("values.yaml"), "replicaCount: 3\n".getBytes());
+      Files.delete(Paths.get(mojo.getOutputDirectory(), "app-0.0.1.tgz"));
+      mojo.execute();
+
+      verify(mojo, times(2)).callCli(contains("helm"), anyString());
+
+      mojo.setHelmVersion("3.6.0");
+      mojo.execute();
+
+      verify(mojo, times(3)).callCli(contains("helm"), anyString());
+    } finally {
+      FileUtils.deleteQuietly(chart.toFile());
+    }
+  }
+
+  @Test
+  void localDependenciesAreLinkedFromStore(PackageMojo mojo) throws Exception {
+
+    final Path charts = Files.createTempDirectory("charts");
+    try {
+      Files.createDirectories(charts.resolve("lib"));
+      Files.write(
+          charts.resolve("lib/Chart.yaml"),
+          "apiVersion: v2\nname: lib\nversion: 0.1.0\n".getBytes());
+      Files.createDirectories(charts.resolve("app/charts"));
+      Files.write(
+          charts.resolve("app/Chart.yaml"),
+          ("apiVersion: v2\nname: app\nversion: 0.1.0\n"
+                  + "dependencies:\n- name: lib\n  version: 0.1.0\n  repository: file://../lib\n")
+              .getBytes());
+      Files.write(charts.resolve("app/charts/lib-0.1.0.tgz"), new byte[0]);
+
+      doReturn(charts.toString()).when(mojo).getChartDirectory();
+      doReturn(new ValueOverride()).when(mojo).getValues();
+      mojo.setNativePackaging(true);
+      mojo.setLinkDependencies(true);
+      mojo.setChartStore(charts.resolve("store").toString());
+
+      mojo.execute();
+
+      assertFalse(Files.exists(charts.resolve("app/charts/lib-0.1.0.tgz")));
+      assertArrayEquals(
+          Files.readAllBytes(Paths.get(mojo.getOutputDirectory(), "lib-0.0.1.tgz")),
+          Files.readAllBytes(charts.resolve("app/charts/lib-0.0.1.tgz")));
+    } finally {
+      FileUtils.deleteQuietly(charts.toFile());
+    }
+  }
 }
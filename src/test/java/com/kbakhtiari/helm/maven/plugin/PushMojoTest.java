@@ -4,19 +4,34 @@ import com.kbakhtiari.helm.maven.plugin.junit.MojoExtension;
 import com.kbakhtiari.helm.maven.plugin.junit.MojoProperty;
 import com.kbakhtiari.helm.maven.plugin.junit.SystemPropertyExtension;
 import com.kbakhtiari.helm.maven.plugin.pojo.HelmRepository;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.Collections.EMPTY_LIST;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
@@ -124,6 +139,210 @@ class PushMojoTest {
             .count());
   }
 
+  @Test
+  void checkEveryChartIsPushedToItsOwnReference(PushMojo pushMojo) throws Exception {
+
+    final Path testPath = Files.createTempDirectory("push");
+    try {
+      final Path app = archive(testPath, "app", "0.1.0", "");
+      final Path db = archive(testPath, "db", "0.2.0", "");
+      doReturn(REGISTRY).when(pushMojo).getHelmUploadRepo();
+      doNothing().when(pushMojo).callCli(anyString(), anyString());
+      doReturn(EMPTY).when(pushMojo).getHelmCommand(anyString(), anyString());
+      doReturn(asList(app.toString(), db.toString())).when(pushMojo).getChartTgzs(anyString());
+      doReturn("DUMMY_RELEASE_NAME").when(pushMojo).getReleaseName();
+      doReturn("0.0.1-SNAPSHOT").when(pushMojo).getChartVersion();
+      pushMojo.setPushByChart(true);
+
+      pushMojo.execute();
+
+      ArgumentCaptor<String> captorArgument = ArgumentCaptor.forClass(String.class);
+      verify(pushMojo, atLeast(5)).getHelmCommand(anyString(), captorArgument.capture());
+      assertTrue(
+          captorArgument
+              .getAllValues()
+              .contains(" " + app.toAbsolutePath() + " registry.gitlab.example.com/app:0.1.0 "));
+      assertTrue(
+          captorArgument
+              .getAllValues()
+              .contains(" " + db.toAbsolutePath() + " registry.gitlab.example.com/db:0.2.0 "));
+      assertTrue(
+          captorArgument.getAllValues().stream().noneMatch(arg -> arg.contains("DUMMY_RELEASE")));
+    } finally {
+      deleteQuietly(testPath.toFile());
+    }
+  }
+
+  @Test
+  void checkChartsArePushedToTheReleaseByDefault(PushMojo pushMojo) throws Exception {
+
+    final Path testPath = Files.createTempDirectory("push");
+    try {
+      final Path app = archive(testPath, "app", "0.1.0", "");
+      final Path db = archive(testPath, "db", "0.2.0", "");
+      doReturn(REGISTRY).when(pushMojo).getHelmUploadRepo();
+      doNothing().when(pushMojo).callCli(anyString(), anyString());
+      doReturn(EMPTY).when(pushMojo).getHelmCommand(anyString(), anyString());
+      doReturn(asList(app.toString(), db.toString())).when(pushMojo).getChartTgzs(anyString());
+      doReturn("DUMMY_RELEASE_NAME").when(pushMojo).getReleaseName();
+      doReturn("0.0.1-SNAPSHOT").when(pushMojo).getChartVersion();
+
+      pushMojo.execute();
+
+      verify(pushMojo).forEachChart(anyList(), eq(1), any());
+      ArgumentCaptor<String> captorArgument = ArgumentCaptor.forClass(String.class);
+      verify(pushMojo, atLeast(5)).getHelmCommand(anyString(), captorArgument.capture());
+      assertTrue(
+          captorArgument
+              .getAllValues()
+              .contains(
+                  " "
+                      + app.toAbsolutePath()
+                      + " registry.gitlab.example.com/DUMMY_RELEASE_NAME:0.0.1-SNAPSHOT "));
+      assertTrue(
+          captorArgument
+              .getAllValues()
+              .contains(
+                  " "
+                      + db.toAbsolutePath()
+                      + " registry.gitlab.example.com/DUMMY_RELEASE_NAME:0.0.1-SNAPSHOT "));
+    } finally {
+      deleteQuietly(testPath.toFile());
+    }
+  }
+
+  @Test
+  void checkUploadIsRetried(PushMojo pushMojo) throws MojoExecutionException {
+
+    doReturn(REGISTRY).when(pushMojo).getHelmUploadRepo();
+    doNothing()
+        .doThrow(new MojoExecutionException("registry unavailable"))
+        .doNothing()
+        .when(pushMojo)
+        .callCli(anyString(), anyString());
+    doReturn(EMPTY).when(pushMojo).getHelmCommand(anyString(), anyString());
+    doReturn(asList("DUMMY/PATH")).when(pushMojo).getChartTgzs(anyString());
+    pushMojo.setPushRetries(1);
+
+    pushMojo.execute();
+
+    ArgumentCaptor<String> captorCommand = ArgumentCaptor.forClass(String.class);
+    verify(pushMojo, atLeast(3)).getHelmCommand(captorCommand.capture(), anyString());
+    assertEquals(
+        2,
+        captorCommand.getAllValues().stream()
+            .filter(value -> value.contains("chart save"))
+            .count());
+    assertEquals(
+        1,
+        captorCommand.getAllValues().stream()
+            .filter(value -> value.contains("chart push"))
+            .count());
+  }
+
+  @Test
+  void checkUnchangedChartIsSkipped(PushMojo pushMojo) throws Exception {
+
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/v2/DUMMY_RELEASE_NAME/manifests/0.0.1",
+        exchange -> {
+          exchange.getResponseHeaders().add("Docker-Content-Digest", "sha256:0123");
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    server.start();
+    final Path testPath = Files.createTempDirectory("push");
+    try {
+      final Path tgz = Files.write(testPath.resolve("app-0.0.1.tgz"), new byte[] {1, 2, 3});
+      doReturn(
+              HelmRepository.builder()
+                  .name("local")
+                  .url("localhost:" + server.getAddress().getPort())
+                  .build())
+          .when(pushMojo)
+          .getHelmUploadRepo();
+      doNothing().when(pushMojo).callCli(anyString(), anyString());
+      doReturn(EMPTY).when(pushMojo).getHelmCommand(anyString(), anyString());
+      doReturn(asList(tgz.toString())).when(pushMojo).getChartTgzs(anyString());
+      doReturn("DUMMY_RELEASE_NAME").when(pushMojo).getReleaseName();
+      doReturn("0.0.1").when(pushMojo).getChartVersion();
+      pushMojo.setSkipUnchanged(true);
+      pushMojo.setPlainHttp(true);
+      pushMojo.setPushDigestCache(testPath.resolve("push-digests.json").toString());
+
+      pushMojo.execute();
+      pushMojo.execute();
+
+      ArgumentCaptor<String> captorCommand = ArgumentCaptor.forClass(String.class);
+      verify(pushMojo, atLeast(3)).getHelmCommand(captorCommand.capture(), anyString());
+      assertEquals(
+          1,
+          captorCommand.getAllValues().stream()
+              .filter(value -> value.contains("chart push"))
+              .count());
+    } finally {
+      server.stop(0);
+      deleteQuietly(testPath.toFile());
+    }
+  }
+
+  @Test
+  void checkOnlyChangedChartsOfAProjectArePushed(PushMojo pushMojo) throws Exception {
+
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    for (String chart : new String[] {"app", "db"}) {
+      server.createContext(
+          "/v2/" + chart + "/manifests/0.1.0",
+          exchange -> {
+            exchange.getResponseHeaders().add("Docker-Content-Digest", "sha256:" + chart);
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+          });
+    }
+    server.start();
+    final Path testPath = Files.createTempDirectory("push");
+    try {
+      final Path app = archive(testPath, "app", "0.1.0", "");
+      final Path db = archive(testPath, "db", "0.1.0", "");
+      doReturn(
+              HelmRepository.builder()
+                  .name("local")
+                  .url("localhost:" + server.getAddress().getPort())
+                  .build())
+          .when(pushMojo)
+          .getHelmUploadRepo();
+      doNothing().when(pushMojo).callCli(anyString(), anyString());
+      doReturn(EMPTY).when(pushMojo).getHelmCommand(anyString(), anyString());
+      doReturn(asList(app.toString(), db.toString())).when(pushMojo).getChartTgzs(anyString());
+      pushMojo.setSkipUnchanged(true);
+      pushMojo.setPlainHttp(true);
+      pushMojo.setPushDigestCache(testPath.resolve("push-digests.json").toString());
+      pushMojo.setPushByChart(true);
+
+      pushMojo.execute();
+      pushMojo.execute();
+      archive(testPath, "db", "0.1.0", "changed");
+      pushMojo.execute();
+
+      ArgumentCaptor<String> captorArgument = ArgumentCaptor.forClass(String.class);
+      verify(pushMojo, atLeast(7)).getHelmCommand(anyString(), captorArgument.capture());
+      assertEquals(
+          1,
+          captorArgument.getAllValues().stream()
+              .filter(value -> value.contains(app.toAbsolutePath().toString()))
+              .count());
+      assertEquals(
+          2,
+          captorArgument.getAllValues().stream()
+              .filter(value -> value.contains(db.toAbsolutePath().toString()))
+              .count());
+    } finally {
+      server.stop(0);
+      deleteQuietly(testPath.toFile());
+    }
+  }
+
   @Nested
   @MojoProperty(name = "chartDirectory", value = "junit-helm")
   @ExtendWith({SystemPropertyExtension.class, MojoExtension.class})
@@ -157,4 +376,24 @@ class PushMojoTest {
       verify(pushMojo, never()).callCli(anyString(), anyString());
     }
   }
+
+  /** writes the archive <code>helm package</code> would create for a chart. */
+  static Path archive(Path directory, String name, String version, String content)
+      throws IOException {
+
+    final Path archive = directory.resolve(name + "-" + version + ".tgz");
+    try (TarArchiveOutputStream tar =
+        new TarArchiveOutputStream(
+            new GzipCompressorOutputStream(Files.newOutputStream(archive)))) {
+      final byte[] chart =
+          format("apiVersion: v2\nname: %s\nversion: %s\n# %s\n", name, version, content)
+              .getBytes(UTF_8);
+      final TarArchiveEntry entry = new TarArchiveEntry(name + "/Chart.yaml");
+      entry.setSize(chart.length);
+      tar.putArchiveEntry(entry);
+      tar.write(chart);
+      tar.closeArchiveEntry();
+    }
+    return archive;
+  }
 }
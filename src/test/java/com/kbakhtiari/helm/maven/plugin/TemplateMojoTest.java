@@ -0,0 +1,120 @@
+package com.kbakhtiari.helm.maven.plugin;
+
+import com.kbakhtiari.helm.maven.plugin.junit.MojoExtension;
+import com.kbakhtiari.helm.maven.plugin.junit.MojoProperty;
+import com.kbakhtiari.helm.maven.plugin.junit.SystemPropertyExtension;
+import com.kbakhtiari.helm.maven.plugin.pojo.ValueOverride;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@MojoProperty(name = "chartDirectory", value = "junit-chart")
+@ExtendWith({SystemPropertyExtension.class, MojoExtension.class})
+public class TemplateMojoTest {
+
+  @Test
+  public void rendersEveryChartToItsOwnFile(TemplateMojo mojo) throws Exception {
+
+    final Path charts = Files.createTempDirectory("charts");
+    try {
+      for (String chart : new String[] {"app", "libs/db"}) {
+        Files.createDirectories(charts.resolve(chart));
+        Files.write(
+            charts.resolve(chart).resolve("Chart.yaml"),
+            "apiVersion: v2\nname: chart\nversion: 0.1.0\n".getBytes(UTF_8));
+      }
+      mojo.setChartDirectory(charts.toString());
+      mojo.setValues(new ValueOverride());
+      mojo.setThreads(2);
+      doReturn(Paths.get("helm")).when(mojo).getHelmExecutablePath();
+      doAnswer(
+              invocation -> {
+                final String command = invocation.getArgument(0);
+                Files.write(
+                    invocation.getArgument(2),
+                    ("# " + command.substring(command.indexOf(charts.toString())) + "\n")
+                        .getBytes(UTF_8));
+                return null;
+              })
+          .when(mojo)
+          .callCli(anyString(), anyString(), any(Path.class));
+
+      mojo.execute();
+
+      final Path output = Paths.get(mojo.getTemplateOutputDirectory());
+      assertEquals(
+          "# " + charts.resolve("app"),
+          new String(Files.readAllBytes(output.resolve("app.yaml")), UTF_8).trim());
+      assertEquals(
+          "# " + charts.resolve("libs/db"),
+          new String(Files.readAllBytes(output.resolve("libs/db.yaml")), UTF_8).trim());
+      assertFalse(Files.exists(output.resolve("app.yaml.tmp")));
+    } finally {
+      FileUtils.deleteQuietly(charts.toFile());
+    }
+  }
+
+  @Test
+  public void servesUnchangedChartsFromTheCache(TemplateMojo mojo) throws Exception {
+
+    final Path charts = Files.createTempDirectory("charts");
+    try {
+      Files.write(
+          charts.resolve("Chart.yaml"),
+          "apiVersion: v2\nname: app\nversion: 0.1.0\n".getBytes(UTF_8));
+      mojo.setChartDirectory(charts.toString());
+      mojo.setValues(new ValueOverride());
+      mojo.setCacheManifests(true);
+      mojo.setManifestCacheDirectory(
+          charts.resolve("../" + charts.getFileName() + "-cache").toString());
+      mojo.setManifestCacheMaxSize(1);
+      mojo.setSplitManifests(true);
+      doReturn(Paths.get("helm")).when(mojo).getHelmExecutablePath();
+      doAnswer(
+              invocation -> {
+                Files.write(invocation.getArgument(2), "kind: ConfigMap\n".getBytes(UTF_8));
+                return null;
+              })
+          .when(mojo)
+          .callCli(anyString(), anyString(), any(Path.class));
+
+      mojo.execute();
+      final Path manifest = mojo.getManifestFile(charts.toString());
+      Files.delete(manifest);
+      mojo.execute();
+
+      verify(mojo, times(1)).callCli(anyString(), anyString(), any(Path.class));
+      assertEquals("kind: ConfigMap\n", new String(Files.readAllBytes(manifest), UTF_8));
+      assertEquals(
+          "kind: ConfigMap\n",
+          new String(
+              Files.readAllBytes(
+                  TemplateMojo.getResourceDirectory(manifest).resolve("_/configmap.yaml")),
+              UTF_8));
+
+      mojo.setKubeVersion("1.20.0");
+      mojo.execute();
+
+      verify(mojo, times(2)).callCli(anyString(), anyString(), any(Path.class));
+      verify(mojo).callCli(contains("--kube-version 1.20.0"), anyString(), any(Path.class));
+    } finally {
+      FileUtils.deleteQuietly(charts.toFile());
+      FileUtils.deleteQuietly(Paths.get(mojo.getManifestCacheDirectory()).toFile());
+    }
+  }
+}
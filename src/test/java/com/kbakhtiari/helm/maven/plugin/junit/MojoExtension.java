@@ -100,8 +100,8 @@ public class MojoExtension implements ParameterResolver, BeforeAllCallback, Befo
             || parameter.getType().equals("boolean")) {
           continue;
         }
-        getField(mojoType, parameter.getName())
-            .set(mojo, resolve(context, parameter.getDefaultValue()));
+        Field field = getField(mojoType, parameter.getName());
+        field.set(mojo, convert(field, resolve(context, parameter.getDefaultValue())));
       }
 
       // read mojo values from annotations
@@ -111,7 +111,8 @@ public class MojoExtension implements ParameterResolver, BeforeAllCallback, Befo
               context.getRequiredTestClass().getAnnotationsByType(MojoProperty.class),
               context.getRequiredTestMethod().getAnnotationsByType(MojoProperty.class));
       for (MojoProperty mojoProperty : mojoProperties) {
-        getField(mojoType, mojoProperty.name()).set(mojo, resolve(context, mojoProperty.value()));
+        Field field = getField(mojoType, mojoProperty.name());
+        field.set(mojo, convert(field, resolve(context, mojoProperty.value())));
       }
 
       // settings
@@ -148,6 +149,19 @@ public class MojoExtension implements ParameterResolver, BeforeAllCallback, Befo
     return field;
   }
 
+  private Object convert(Field field, String value) {
+    if (field.getType() == int.class || field.getType() == Integer.class) {
+      return Integer.valueOf(value);
+    }
+    if (field.getType() == long.class || field.getType() == Long.class) {
+      return Long.valueOf(value);
+    }
+    if (field.getType() == boolean.class || field.getType() == Boolean.class) {
+      return Boolean.valueOf(value);
+    }
+    return value;
+  }
+
   private String resolve(ExtensionContext context, String property) {
     String resolved = property;
     // use test specific build directory
@@ -0,0 +1,94 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChartDependencyGraphTest {
+
+  private Path testPath;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    testPath = Files.createTempDirectory("graph").toAbsolutePath();
+  }
+
+  @AfterEach
+  void tearDown() {
+    deleteQuietly(testPath.toFile());
+  }
+
+  @Test
+  void localDependenciesAreScheduledFirst() throws IOException, MojoExecutionException {
+
+    final String umbrella = createChart("umbrella", "file://../library");
+    final String library = createChart("library", "file://../base");
+    final String base = createChart("base");
+    final String other = createChart("other", "https://charts.helm.sh/stable");
+
+    final List<List<String>> levels =
+        ChartDependencyGraph.getLevels(asList(umbrella, library, base, other));
+
+    assertEquals(asList(asList(base, other), asList(library), asList(umbrella)), levels);
+  }
+
+  @Test
+  void nestedChartsAreScheduledBeforeTheirParent() throws IOException, MojoExecutionException {
+
+    final String parent = createChart("parent");
+    final String sub = createChart("parent/charts/sub");
+    final String sibling = createChart("parent-sibling");
+
+    assertEquals(
+        asList(asList(sub, sibling), asList(parent)),
+        ChartDependencyGraph.getLevels(asList(parent, sub, sibling)));
+  }
+
+  @Test
+  void emptyChartDescriptorHasNoDependencies() throws IOException, MojoExecutionException {
+
+    final Path empty = Files.createDirectories(testPath.resolve("empty"));
+    Files.createFile(empty.resolve("Chart.yaml"));
+
+    assertEquals(
+        asList(asList(empty.toString())), ChartDependencyGraph.getLevels(asList(empty.toString())));
+  }
+
+  @Test
+  void cyclicDependenciesAreRejected() throws IOException {
+
+    final String first = createChart("first", "file://../second");
+    final String second = createChart("second", "file://../first");
+
+    assertThrows(
+        MojoExecutionException.class, () -> ChartDependencyGraph.getLevels(asList(first, second)));
+  }
+
+  private String createChart(String name, String... repositories) throws IOException {
+
+    final Path chart = Files.createDirectories(testPath.resolve(name));
+    final StringBuilder descriptor =
+        new StringBuilder("apiVersion: v2\nname: ")
+            .append(name)
+            .append("\nversion: 0.1.0\ndependencies:\n");
+    for (String repository : repositories) {
+      descriptor
+          .append("  - name: dependency\n    version: 0.1.0\n    repository: ")
+          .append(repository)
+          .append("\n");
+    }
+    Files.write(chart.resolve("Chart.yaml"), descriptor.toString().getBytes());
+    return chart.toString();
+  }
+}
@@ -0,0 +1,220 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.kbakhtiari.helm.maven.plugin.pojo.HelmRepository;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ChartDependencyResolverTest {
+
+  private final AtomicInteger archiveRequests = new AtomicInteger();
+
+  private Path testPath;
+  private byte[] archive;
+  private HttpServer server;
+  private String url;
+  private ExecutorService executor;
+  private ChartDependencyResolver resolver;
+  private Log log;
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    testPath = Files.createTempDirectory("resolver").toAbsolutePath();
+    try (InputStream is = getClass().getResourceAsStream("../app-0.1.0.tgz")) {
+      archive = IOUtils.toByteArray(is);
+    }
+    final String index =
+        "apiVersion: v1\n"
+            + "entries:\n"
+            + "  app:\n"
+            + "  - version: 0.1.0\n"
+            + "    urls: [charts/app-0.1.0.tgz]\n"
+            + "    digest: "
+            + HashUtils.toHex(HashUtils.newSha256().digest(archive))
+            + "\n"
+            + "  - version: 0.2.0-rc.1\n"
+            + "    urls: [charts/app-0.2.0-rc.1.tgz]\n"
+            + "  legacy:\n"
+            + "  - version: 1.0.0\n"
+            + "    urls: [charts/app-0.1.0.tgz]\n";
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/index.yaml", exchange -> respond(exchange, index.getBytes(UTF_8)));
+    server.createContext(
+        "/charts/app-0.1.0.tgz",
+        exchange -> {
+          archiveRequests.incrementAndGet();
+          respond(exchange, archive);
+        });
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort();
+
+    executor = Executors.newFixedThreadPool(4);
+    log = mock(Log.class);
+    resolver =
+        ChartDependencyResolver.builder()
+            .store(new ChartStore(testPath.resolve("store"), new SystemStreamLog()))
+            .indexCache(
+                RepositoryIndexCache.builder()
+                    .directory(testPath.resolve("cache"))
+                    .log(new SystemStreamLog())
+                    .retries(0)
+                    .build())
+            .repositories(asList(HelmRepository.builder().name("local").url(url + "/").build()))
+            .packager(
+                ChartPackager.builder()
+                    .log(new SystemStreamLog())
+                    .executor(ForkJoinPool.commonPool())
+                    .build())
+            .executor(executor)
+            .connectTimeout(1000)
+            .readTimeout(1000)
+            .build();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+    executor.shutdownNow();
+    deleteQuietly(testPath.toFile());
+  }
+
+  @Test
+  void downloadsSharedDependencyOnce() throws Exception {
+
+    final Path one = chart("one", dependency("app", "^0.1.0", url));
+    final Path two = chart("two", dependency("app", "~0.1", "@local"));
+    Files.createDirectories(two.resolve("charts"));
+    Files.write(two.resolve("charts/app-0.0.1.tgz"), new byte[0]);
+
+    assertTrue(resolver.build(one, log));
+    assertTrue(resolver.build(two, log));
+
+    assertEquals(1, archiveRequests.get());
+    assertEquals(1, resolver.getDownloaded());
+    assertEquals(1, resolver.getReused());
+    assertArrayEquals(archive, Files.readAllBytes(one.resolve("charts/app-0.1.0.tgz")));
+    assertTrue(
+        Files.isSameFile(one.resolve("charts/app-0.1.0.tgz"), two.resolve("charts/app-0.1.0.tgz")));
+    assertFalse(Files.exists(two.resolve("charts/app-0.0.1.tgz")));
+  }
+
+  @Test
+  void warnsAboutUnverifiedDownloads() throws Exception {
+
+    final Path chart = chart("one", dependency("legacy", "1.0.0", url));
+
+    assertTrue(resolver.build(chart, log));
+
+    assertArrayEquals(archive, Files.readAllBytes(chart.resolve("charts/legacy-1.0.0.tgz")));
+    verify(log)
+        .warn("Repository local has no digest for legacy 1.0.0, its download is not verified");
+  }
+
+  @Test
+  void honorsLockAndPackagesLocalDependencies() throws Exception {
+
+    chart("lib");
+    final Path chart =
+        chart("one", dependency("app", ">=0.1.0", url), dependency("lib", "*", "file://../lib"));
+    Files.write(
+        chart.resolve("Chart.lock"),
+        ("dependencies:\n"
+                + "- name: app\n  repository: "
+                + url
+                + "\n  version: 0.1.0\n"
+                + "- name: lib\n  repository: file://../lib\n  version: 1.0.0\n")
+            .getBytes(UTF_8));
+
+    assertTrue(resolver.build(chart, log));
+    assertTrue(Files.exists(chart.resolve("charts/app-0.1.0.tgz")));
+    assertTrue(Files.exists(chart.resolve("charts/lib-1.0.0.tgz")));
+
+    Files.write(
+        chart.resolve("Chart.lock"),
+        ("dependencies:\n- name: app\n  repository: " + url + "\n  version: 0.0.9\n")
+            .getBytes(UTF_8));
+    assertThrows(MojoExecutionException.class, () -> resolver.build(chart, log));
+  }
+
+  @Test
+  void leavesUnknownRepositoriesToHelm() throws Exception {
+
+    final Path chart =
+        chart(
+            "one",
+            dependency("app", "^0.1.0", url),
+            dependency("other", "1.0.0", "oci://registry/charts"));
+
+    assertFalse(resolver.build(chart, log));
+    assertFalse(Files.exists(chart.resolve("charts")));
+    assertThrows(
+        MojoExecutionException.class,
+        () -> resolver.build(chart("two", dependency("app", "^0.2.0", url)), log));
+  }
+
+  private Path chart(String name, String... dependencies) throws IOException {
+
+    final Path chart = testPath.resolve(name);
+    Files.createDirectories(chart);
+    Files.write(
+        chart.resolve("Chart.yaml"),
+        ("apiVersion: v2\nname: "
+                + name
+                + "\nversion: 1.0.0\n"
+                + (dependencies.length > 0
+                    ? "dependencies:\n" + String.join("", dependencies)
+                    : ""))
+            .getBytes(UTF_8));
+    return chart;
+  }
+
+  private static String dependency(String name, String version, String repository) {
+
+    return "- name: "
+        + name
+        + "\n  version: \""
+        + version
+        + "\"\n  repository: \""
+        + repository
+        + "\"\n";
+  }
+
+  private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(body);
+    }
+    exchange.close();
+  }
+}
@@ -0,0 +1,83 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.MatchPatterns;
+import org.eclipse.aether.DefaultSessionData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class ChartDiscoveryCacheTest {
+
+  private Path testPath;
+  private ChartDiscoveryCache cache;
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    testPath = Files.createTempDirectory("discovery").toAbsolutePath();
+    Files.createDirectories(testPath.resolve("app"));
+    Files.createFile(testPath.resolve("app/Chart.yaml"));
+    cache = new ChartDiscoveryCache(new DefaultSessionData(), new SystemStreamLog());
+  }
+
+  @AfterEach
+  void tearDown() {
+    deleteQuietly(testPath.toFile());
+  }
+
+  @Test
+  void reusesChartsOfUnchangedTree() throws IOException {
+
+    assertEquals(asList(testPath.resolve("app").toString()), get(newScanner()));
+
+    final ChartScanner scanner = newScanner();
+    assertEquals(asList(testPath.resolve("app").toString()), get(scanner));
+    verify(scanner, never()).scan(testPath);
+  }
+
+  @Test
+  void scansAgainWhenChartsChange() throws IOException {
+
+    get(newScanner());
+    Files.createDirectories(testPath.resolve("other"));
+    Files.createFile(testPath.resolve("other/Chart.yaml"));
+
+    assertEquals(
+        asList(testPath.resolve("app").toString(), testPath.resolve("other").toString()),
+        get(newScanner()));
+
+    Files.setLastModifiedTime(testPath.resolve("app/Chart.yaml"), FileTime.fromMillis(0));
+    final ChartScanner scanner = newScanner();
+    get(scanner);
+    verify(scanner).scan(testPath);
+  }
+
+  private List<String> get(ChartScanner scanner) throws IOException {
+
+    return cache.get(testPath.toString(), scanner, testPath);
+  }
+
+  private static ChartScanner newScanner() {
+
+    return spy(
+        ChartScanner.builder()
+            .log(new SystemStreamLog())
+            .exclusions(MatchPatterns.from(Collections.emptyList()))
+            .build());
+  }
+}
@@ -0,0 +1,187 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChartPackagerTest {
+
+  private Path testPath;
+  private Map<String, byte[]> helmArchive;
+  private ChartPackager packager;
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    testPath = Files.createTempDirectory("packager").toAbsolutePath();
+    try (InputStream is = getClass().getResourceAsStream("../app-0.1.0.tgz")) {
+      helmArchive = read(is);
+    }
+    for (Map.Entry<String, byte[]> entry : helmArchive.entrySet()) {
+      final Path file = testPath.resolve("src").resolve(entry.getKey());
+      Files.createDirectories(file.getParent());
+      Files.write(file, entry.getValue());
+    }
+    packager =
+        ChartPackager.builder()
+            .log(new SystemStreamLog())
+            .executor(ForkJoinPool.commonPool())
+            .build();
+  }
+
+  @AfterEach
+  void tearDown() {
+    deleteQuietly(testPath.toFile());
+  }
+
+  @Test
+  void packagesLikeHelm() throws Exception {
+
+    final Path archive =
+        packager.pack(testPath.resolve("src/app"), testPath.resolve("out"), null, null);
+
+    assertEquals(testPath.resolve("out/app-0.1.0.tgz"), archive);
+    final Map<String, byte[]> entries = read(archive);
+    assertEquals(new ArrayList<>(helmArchive.keySet()), new ArrayList<>(entries.keySet()));
+    helmArchive.forEach((name, content) -> assertArrayEquals(content, entries.get(name), name));
+  }
+
+  @Test
+  void honorsHelmIgnoreAndOverrides() throws Exception {
+
+    final Path chart = testPath.resolve("src/app");
+    final byte[] large = new byte[1024 * 1024];
+    new Random(42).nextBytes(large);
+    Files.createDirectories(chart.resolve(".git"));
+    Files.write(chart.resolve(".git/config"), new byte[] {1});
+    Files.write(chart.resolve("values.yaml.bak"), new byte[] {1});
+    Files.write(chart.resolve("templates/.hidden.yaml"), new byte[] {1});
+    Files.createDirectories(chart.resolve("files"));
+    Files.write(chart.resolve("files/large.bin"), large);
+
+    final Path archive = packager.pack(chart, testPath.resolve("out"), "0.2.0", "2.0");
+
+    assertEquals("app-0.2.0.tgz", archive.getFileName().toString());
+    final Map<String, byte[]> entries = read(archive);
+    assertFalse(entries.containsKey("app/.git/config"));
+    assertFalse(entries.containsKey("app/values.yaml.bak"));
+    assertFalse(entries.containsKey("app/templates/.hidden.yaml"));
+    assertArrayEquals(large, entries.get("app/files/large.bin"));
+    final String chartFile = new String(entries.get("app/Chart.yaml"), StandardCharsets.UTF_8);
+    assertTrue(chartFile.contains("version: 0.2.0"), chartFile);
+    assertTrue(chartFile.contains("appVersion: \"2.0\""), chartFile);
+  }
+
+  @Test
+  void keepsTheTextOfChartScalars() throws Exception {
+
+    final Path chart = testPath.resolve("src/app");
+    final String chartFile =
+        "# the app\n"
+            + "apiVersion: v2\n"
+            + "name: app\n"
+            + "version: 0.1.0 # bumped by the build\n"
+            + "appVersion: 1.10\n"
+            + "created: 2021-01-01\n"
+            + "deprecated: no\n";
+    Files.write(chart.resolve("Chart.yaml"), chartFile.getBytes(StandardCharsets.UTF_8));
+
+    final Path unchanged = packager.pack(chart, testPath.resolve("a"), null, null);
+    assertEquals(
+        chartFile, new String(read(unchanged).get("app/Chart.yaml"), StandardCharsets.UTF_8));
+
+    final Path overridden = packager.pack(chart, testPath.resolve("b"), "0.2.0", "1.20");
+    assertEquals("app-0.2.0.tgz", overridden.getFileName().toString());
+    assertEquals(
+        chartFile
+            .replace("version: 0.1.0", "version: 0.2.0")
+            .replace("appVersion: 1.10", "appVersion: \"1.20\""),
+        new String(read(overridden).get("app/Chart.yaml"), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void rewritesChartsWhichCantBeEdited() throws Exception {
+
+    final Path chart = testPath.resolve("src/app");
+    Files.write(
+        chart.resolve("Chart.yaml"),
+        "{apiVersion: v2, name: app, version: 0.1.0, appVersion: 1.10, deprecated: no}\n"
+            .getBytes(StandardCharsets.UTF_8));
+
+    final Path archive = packager.pack(chart, testPath.resolve("out"), "0.2.0", null);
+
+    final String chartFile =
+        new String(read(archive).get("app/Chart.yaml"), StandardCharsets.UTF_8);
+    assertTrue(chartFile.contains("appVersion: \"1.10\""), chartFile);
+    assertTrue(chartFile.contains("deprecated: \"no\""), chartFile);
+    assertTrue(chartFile.contains("version: 0.2.0"), chartFile);
+  }
+
+  @Test
+  void reproducibleArchivesAreByteStable() throws Exception {
+
+    final ChartPackager reproducible =
+        ChartPackager.builder()
+            .log(new SystemStreamLog())
+            .executor(ForkJoinPool.commonPool())
+            .reproducible(true)
+            .build();
+    final Path chart = testPath.resolve("src/app");
+
+    final byte[] first =
+        Files.readAllBytes(reproducible.pack(chart, testPath.resolve("a"), null, null));
+    Files.setLastModifiedTime(chart.resolve("values.yaml"), FileTime.fromMillis(1234567890000L));
+    final byte[] second =
+        Files.readAllBytes(reproducible.pack(chart, testPath.resolve("b"), null, null));
+    assertArrayEquals(first, second);
+
+    final Path helmPackaged = testPath.resolve("helm/app-0.1.0.tgz");
+    Files.createDirectories(helmPackaged.getParent());
+    Files.copy(getClass().getResourceAsStream("../app-0.1.0.tgz"), helmPackaged);
+    reproducible.normalize(helmPackaged);
+    assertArrayEquals(first, Files.readAllBytes(helmPackaged));
+  }
+
+  private static Map<String, byte[]> read(Path archive) throws IOException {
+
+    try (InputStream is = Files.newInputStream(archive)) {
+      return read(is);
+    }
+  }
+
+  private static Map<String, byte[]> read(InputStream is) throws IOException {
+
+    final Map<String, byte[]> entries = new LinkedHashMap<>();
+    try (TarArchiveInputStream tar =
+        new TarArchiveInputStream(new GzipCompressorInputStream(is, true))) {
+      TarArchiveEntry entry;
+      while ((entry = tar.getNextTarEntry()) != null) {
+        entries.put(entry.getName(), IOUtils.toByteArray(tar));
+      }
+    }
+    return entries;
+  }
+}
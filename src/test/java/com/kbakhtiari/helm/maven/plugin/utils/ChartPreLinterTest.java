@@ -0,0 +1,85 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChartPreLinterTest {
+
+  private Path chart;
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    chart = Files.createTempDirectory("chart");
+  }
+
+  @AfterEach
+  void tearDown() {
+    deleteQuietly(chart.toFile());
+  }
+
+  @Test
+  void passesValidCharts() throws IOException {
+
+    write("Chart.yaml", "apiVersion: v2\nname: app\nversion: 1.2.3\ntype: library\n");
+    write("values.yaml", "# only comments\n");
+
+    assertTrue(ChartPreLinter.check(chart).isEmpty());
+  }
+
+  @Test
+  void treatsAnEmptyTypeAsAbsent() throws IOException {
+
+    write("Chart.yaml", "apiVersion: v2\nname: app\nversion: 1.2.3\ntype: \"\"\n");
+    assertTrue(ChartPreLinter.check(chart).isEmpty());
+
+    write("Chart.yaml", "apiVersion: v2\nname: app\nversion: 1.2.3\ntype:\n");
+    assertTrue(ChartPreLinter.check(chart).isEmpty());
+  }
+
+  @Test
+  void reportsStructuralProblems() throws IOException {
+
+    write("Chart.yaml", "apiVersion: v3\nname: app\nversion: one\ntype: plugin\n");
+    write("values.yaml", "- a list\n");
+
+    assertEquals(
+        Arrays.asList(
+            "Chart.yaml: apiVersion 'v3' is not valid, expected v1 or v2",
+            "Chart.yaml: version 'one' is not a semantic version",
+            "Chart.yaml: type 'plugin' is not valid, expected application or library",
+            "values.yaml: the values must be a map"),
+        ChartPreLinter.check(chart));
+  }
+
+  @Test
+  void reportsMissingAndInvalidFiles() throws IOException {
+
+    assertEquals(Arrays.asList("Chart.yaml is missing"), ChartPreLinter.check(chart));
+
+    write("Chart.yaml", "apiVersion: v1\nname: app\n");
+    write("values.yaml", "image:\n  tag: [unclosed\n");
+    final List<String> problems = ChartPreLinter.check(chart);
+
+    assertEquals(2, problems.size());
+    assertEquals("Chart.yaml: version is required", problems.get(0));
+    assertTrue(problems.get(1).startsWith("values.yaml is not valid YAML"));
+  }
+
+  private void write(String name, String content) throws IOException {
+
+    Files.write(chart.resolve(name), content.getBytes(UTF_8));
+  }
+}
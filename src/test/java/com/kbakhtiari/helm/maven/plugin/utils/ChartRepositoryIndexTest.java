@@ -0,0 +1,96 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ChartRepositoryIndexTest {
+
+  private static final String INDEX =
+      "apiVersion: v1\n"
+          + "entries:\n"
+          + "  app:\n"
+          + "  - apiVersion: v2\n"
+          + "    version: 1.10.0\n"
+          + "    description: \"the app\"\n"
+          + "    maintainers:\n"
+          + "    - name: someone\n"
+          + "      email: someone@example.com\n"
+          + "    urls:\n"
+          + "    - https://example.com/app-1.10.0.tgz\n"
+          + "    - https://mirror.example.com/app-1.10.0.tgz\n"
+          + "    digest: d1\n"
+          + "  - version: 1.2.0-rc.1\n"
+          + "    urls: [app-1.2.0-rc.1.tgz]\n"
+          + "    digest: d2\n"
+          + "  - version: 1.2.0\n"
+          + "    urls: [app-1.2.0.tgz]\n"
+          + "    digest: d3\n"
+          + "  - version: not-a-version\n"
+          + "    urls: [app-broken.tgz]\n"
+          + "  - version: v1.9\n"
+          + "    urls: [app-v1.9.tgz]\n"
+          + "  broken:\n"
+          + "  - version: latest\n"
+          + "generated: \"2026-10-17T10:00:00Z\"\n";
+
+  @Test
+  void keepsVersionsSortedByPrecedence() throws IOException {
+
+    final ChartRepositoryIndex index = parse();
+
+    assertEquals(asList("app"), asList(index.getCharts().toArray()));
+    assertEquals(asList("1.2.0-rc.1", "1.2.0", "v1.9", "1.10.0"), index.getVersions("app"));
+    assertEquals(asList(), index.getVersions("broken"));
+    assertEquals("1.10.0", index.findHighest("app", version -> true));
+    assertEquals("1.2.0", index.findHighest("app", version -> version.getMinor() < 9));
+    assertEquals(
+        "1.2.0-rc.1",
+        index.findHighest("app", version -> version.compareTo(ChartVersion.parse("1.2.0")) < 0));
+    assertNull(index.findHighest("other", version -> true));
+  }
+
+  @Test
+  void keepsFirstUrlAndDigest() throws IOException {
+
+    final ChartRepositoryIndex index = parse();
+
+    assertEquals("https://example.com/app-1.10.0.tgz", index.getUrl("app", "1.10.0"));
+    assertEquals("d1", index.getDigest("app", "1.10.0"));
+    assertEquals("app-v1.9.tgz", index.getUrl("app", "1.9.0"));
+    assertNull(index.getDigest("app", "v1.9"));
+    assertNull(index.getUrl("app", "2.0.0"));
+    assertNull(index.getUrl("app", "not-a-version"));
+  }
+
+  @Test
+  void loadsGzippedIndex() throws IOException {
+
+    final Path file = Files.createTempFile("index", ".yaml.gz");
+    try {
+      try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(file))) {
+        os.write(INDEX.getBytes(UTF_8));
+      }
+      assertEquals(
+          asList("1.2.0-rc.1", "1.2.0", "v1.9", "1.10.0"),
+          ChartRepositoryIndex.load(file).getVersions("app"));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static ChartRepositoryIndex parse() throws IOException {
+
+    return ChartRepositoryIndex.parse(new ByteArrayInputStream(INDEX.getBytes(UTF_8)));
+  }
+}
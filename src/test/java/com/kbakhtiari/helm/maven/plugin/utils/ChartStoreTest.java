@@ -0,0 +1,82 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChartStoreTest {
+
+  private Path testPath;
+  private ChartStore store;
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    testPath = Files.createTempDirectory("store").toAbsolutePath();
+    store = new ChartStore(testPath.resolve("store"), new SystemStreamLog());
+  }
+
+  @AfterEach
+  void tearDown() {
+    deleteQuietly(testPath.toFile());
+  }
+
+  @Test
+  void storesArchivesOnceAndLinksThem() throws IOException {
+
+    final String sha256 = store.add(write("a.tgz", "archive"));
+    assertEquals(sha256, store.put(write("b.tgz", "archive")));
+    assertTrue(Files.exists(testPath.resolve("b.tgz")));
+
+    store.materialize(sha256, testPath.resolve("one/charts/a-1.0.0.tgz"));
+    store.materialize(sha256, testPath.resolve("two/charts/a-1.0.0.tgz"));
+
+    assertArrayEquals(
+        "archive".getBytes(UTF_8), Files.readAllBytes(testPath.resolve("one/charts/a-1.0.0.tgz")));
+    assertTrue(
+        Files.isSameFile(
+            testPath.resolve("one/charts/a-1.0.0.tgz"),
+            testPath.resolve("two/charts/a-1.0.0.tgz")));
+    assertNull(store.get("../../etc/passwd"));
+  }
+
+  @Test
+  void collectsArchivesNotAccessedRecently() throws IOException {
+
+    final String unused = store.add(write("a.tgz", "unused"));
+    final String used = store.add(write("b.tgz", "used"));
+    final FileTime longAgo = FileTime.from(Instant.now().minus(Duration.ofDays(40)));
+    for (String sha256 : new String[] {unused, used}) {
+      Files.getFileAttributeView(store.get(sha256), BasicFileAttributeView.class)
+          .setTimes(longAgo, longAgo, null);
+    }
+    store.materialize(used, testPath.resolve("charts/b-1.0.0.tgz"));
+
+    assertEquals(1, store.collect(Duration.ofDays(30)));
+    assertNull(store.get(unused));
+    assertNotNull(store.get(used));
+    assertTrue(Files.exists(testPath.resolve("charts/b-1.0.0.tgz")));
+  }
+
+  private Path write(String name, String content) throws IOException {
+
+    return Files.write(testPath.resolve(name), content.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,90 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HelmBinaryCacheTest {
+
+  private Path testPath;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    testPath = Files.createTempDirectory("cache").toAbsolutePath();
+  }
+
+  @AfterEach
+  void tearDown() {
+    deleteQuietly(testPath.toFile());
+  }
+
+  @Test
+  void installsOnlyOnceForConcurrentModules() throws Exception {
+
+    final AtomicInteger installations = new AtomicInteger();
+    final HelmBinaryCache cache = new HelmBinaryCache(testPath, new SystemStreamLog());
+    final Callable<Path> lookup =
+        () ->
+            cache.get(
+                "3.4.2/linux-amd64",
+                "helm",
+                target -> {
+                  installations.incrementAndGet();
+                  Files.write(target, new byte[] {1, 2, 3});
+                });
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Path>> results =
+          executor.invokeAll(
+              IntStream.range(0, 8).mapToObj(i -> lookup).collect(Collectors.toList()));
+      for (Future<Path> result : results) {
+        assertEquals(testPath.resolve("3.4.2/linux-amd64/helm"), result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, installations.get());
+    assertArrayEquals(
+        new byte[] {1, 2, 3}, Files.readAllBytes(testPath.resolve("3.4.2/linux-amd64/helm")));
+  }
+
+  @Test
+  void failedInstallationLeavesNoEntry() throws IOException {
+
+    final HelmBinaryCache cache = new HelmBinaryCache(testPath, new SystemStreamLog());
+
+    try {
+      cache.get(
+          "broken",
+          "helm",
+          target -> {
+            Files.write(target, new byte[] {1});
+            throw new IOException("connection reset");
+          });
+    } catch (Exception e) {
+      // expected
+    }
+
+    assertEquals(
+        1L, Files.list(testPath.resolve("broken")).count(), "only the lock file should remain");
+  }
+}
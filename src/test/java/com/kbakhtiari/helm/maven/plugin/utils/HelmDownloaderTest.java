@@ -0,0 +1,182 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HelmDownloaderTest {
+
+  private final byte[] archive = new byte[200_000];
+  private final List<String> ranges = new CopyOnWriteArrayList<>();
+  private final AtomicInteger failures = new AtomicInteger();
+
+  private HttpServer server;
+  private Path testPath;
+  private String url;
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    new Random(42).nextBytes(archive);
+    testPath = Files.createTempDirectory("download").toAbsolutePath();
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/helm.tar.gz", this::serveArchive);
+    server.createContext(
+        "/helm.tar.gz.sha256sum",
+        exchange ->
+            respond(
+                exchange,
+                200,
+                (HashUtils.toHex(HashUtils.newSha256().digest(archive)) + "  helm.tar.gz\n")
+                    .getBytes(UTF_8)));
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort() + "/helm.tar.gz";
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+    deleteQuietly(testPath.toFile());
+  }
+
+  @Test
+  void downloadsAndVerifiesChecksum() throws IOException {
+
+    final HelmDownloader downloader = downloader(0);
+    final Path target = testPath.resolve("helm.tar.gz");
+
+    downloader.download(url, downloader.fetchChecksum(url + ".sha256sum"), target);
+
+    assertArrayEquals(archive, Files.readAllBytes(target));
+    assertFalse(Files.exists(testPath.resolve("helm.tar.gz.part")));
+  }
+
+  @Test
+  void rejectsChecksumMismatch() {
+
+    final Path target = testPath.resolve("helm.tar.gz");
+
+    assertThrows(
+        HelmDownloader.ChecksumException.class,
+        () -> downloader(0).download(url, HashUtils.sha256Hex("something else"), target));
+    assertFalse(Files.exists(target));
+  }
+
+  @Test
+  void doesNotRetryMissingChecksum() {
+
+    final AtomicInteger requests = new AtomicInteger();
+    server.createContext(
+        "/missing.sha256sum",
+        exchange -> {
+          requests.incrementAndGet();
+          respond(exchange, 404, new byte[0]);
+        });
+
+    assertThrows(
+        FileNotFoundException.class,
+        () -> downloader(3).fetchChecksum(url.replace("helm.tar.gz", "missing.sha256sum")));
+    assertEquals(1, requests.get());
+  }
+
+  @Test
+  void resumesPartialDownload() throws IOException {
+
+    final Path target = testPath.resolve("helm.tar.gz");
+    final byte[] head = new byte[50_000];
+    System.arraycopy(archive, 0, head, 0, head.length);
+    Files.write(testPath.resolve("helm.tar.gz.part"), head);
+
+    final HelmDownloader downloader = downloader(0);
+    downloader.download(url, downloader.fetchChecksum(url + ".sha256sum"), target);
+
+    assertEquals(1, ranges.size());
+    assertEquals("bytes=50000-", ranges.get(0));
+    assertArrayEquals(archive, Files.readAllBytes(target));
+  }
+
+  @Test
+  void retriesFailedDownload() throws IOException {
+
+    failures.set(2);
+    final Path target = testPath.resolve("helm.tar.gz");
+
+    downloader(2).download(url, null, target);
+
+    assertArrayEquals(archive, Files.readAllBytes(target));
+    assertTrue(failures.get() <= 0);
+  }
+
+  @Test
+  void givesUpAfterRetries() {
+
+    failures.set(5);
+
+    assertThrows(
+        IOException.class, () -> downloader(1).download(url, null, testPath.resolve("helm")));
+  }
+
+  private HelmDownloader downloader(int retries) {
+
+    return HelmDownloader.builder()
+        .log(new SystemStreamLog())
+        .connectTimeout(1000)
+        .readTimeout(1000)
+        .bufferSize(4096)
+        .retries(retries)
+        .backoff(10)
+        .build();
+  }
+
+  private void serveArchive(HttpExchange exchange) throws IOException {
+
+    if (failures.getAndDecrement() > 0) {
+      respond(exchange, 503, new byte[0]);
+      return;
+    }
+    final String range = exchange.getRequestHeaders().getFirst("Range");
+    if (range == null) {
+      respond(exchange, 200, archive);
+      return;
+    }
+    ranges.add(range);
+    final int start = Integer.parseInt(range.replaceAll("bytes=(\\d+)-", "$1"));
+    final byte[] rest = new byte[archive.length - start];
+    System.arraycopy(archive, start, rest, 0, rest.length);
+    exchange
+        .getResponseHeaders()
+        .add("Content-Range", "bytes " + start + "-" + (archive.length - 1) + "/" + archive.length);
+    respond(exchange, 206, rest);
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+
+    exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(body);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ManifestCacheTest {
+
+  private Path testPath;
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    testPath = Files.createTempDirectory("manifests");
+  }
+
+  @AfterEach
+  void tearDown() {
+    deleteQuietly(testPath.toFile());
+  }
+
+  @Test
+  void servesManifestsRenderedBefore() throws IOException {
+
+    final ManifestCache cache =
+        new ManifestCache(testPath.resolve("cache"), 1024, new SystemStreamLog());
+    final Path chart = Files.createDirectories(testPath.resolve("chart"));
+    Files.write(chart.resolve("Chart.yaml"), "name: chart\n".getBytes(UTF_8));
+    final String key = ManifestCache.key(chart, "helm template chart", "v3.5.0");
+    final Path target = testPath.resolve("out/chart.yaml");
+
+    assertFalse(cache.get(key, target));
+    cache.put(key, Files.write(testPath.resolve("rendered.yaml"), "kind: Pod\n".getBytes(UTF_8)));
+    assertTrue(cache.get(key, target));
+
+    assertEquals("kind: Pod\n", new String(Files.readAllBytes(target), UTF_8));
+    assertEquals(1, cache.getHits().get());
+    assertEquals(1, cache.getMisses().get());
+    assertNotEquals(key, ManifestCache.key(chart, "helm template chart", "v3.6.0"));
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedEntries() throws IOException {
+
+    final ManifestCache cache =
+        new ManifestCache(testPath.resolve("cache"), 250, new SystemStreamLog());
+    final Path rendered = Files.write(testPath.resolve("rendered.yaml"), new byte[100]);
+    final String[] keys = new String[3];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = HashUtils.sha256Hex("key" + i);
+      cache.put(keys[i], rendered);
+      Files.setLastModifiedTime(
+          testPath.resolve("cache").resolve(keys[i].substring(0, 2)).resolve(keys[i] + ".yaml"),
+          FileTime.from(Instant.now().minusSeconds(60 - i)));
+    }
+    assertTrue(cache.get(keys[0], testPath.resolve("out.yaml")));
+
+    cache.evict();
+
+    assertEquals(1, cache.getEvictions().get());
+    assertFalse(cache.get(keys[1], testPath.resolve("out.yaml")));
+    assertTrue(cache.get(keys[0], testPath.resolve("out.yaml")));
+    assertTrue(cache.get(keys[2], testPath.resolve("out.yaml")));
+  }
+}
@@ -0,0 +1,145 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ManifestSplitterTest {
+
+  private Path testPath;
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    testPath = Files.createTempDirectory("manifests");
+  }
+
+  @AfterEach
+  void tearDown() {
+    deleteQuietly(testPath.toFile());
+  }
+
+  @Test
+  void splitsEveryResourceIntoItsOwnFile() throws IOException {
+
+    final String config =
+        "# Source: app/templates/config.yaml\n"
+            + "apiVersion: v1\n"
+            + "kind: ConfigMap\n"
+            + "metadata:\n"
+            + "  name: app\n"
+            + "  namespace: prod\n"
+            + "data:\n"
+            + "  big: "
+            + StringUtils.repeat('x', 100_000)
+            + "\n";
+    final String role =
+        "# Source: app/templates/role.yaml\n"
+            + "apiVersion: rbac.authorization.k8s.io/v1\n"
+            + "kind: ClusterRole\n"
+            + "metadata:\n"
+            + "  name: app:reader\n";
+    final String secret = "kind: Secret\r\nmetadata:\r\n  name: app\r\n";
+    final String other = "kind: Secret\nmetadata:\n  name: app";
+    final Path manifest =
+        Files.write(
+            testPath.resolve("app.yaml"),
+            ("---\n# Source: app/templates/empty.yaml\n---\n"
+                    + config
+                    + "--- \n"
+                    + role
+                    + "---\r\n"
+                    + secret
+                    + "---\n"
+                    + other)
+                .getBytes(UTF_8));
+
+    final ManifestIndex index = ManifestSplitter.split(manifest, testPath.resolve("resources"));
+
+    assertEquals(
+        "prod/configmap-app.yaml _/clusterrole-app_reader.yaml _/secret-app.yaml"
+            + " _/secret-app-2.yaml",
+        index.getResources().stream()
+            .map(ManifestIndex.Entry::getFile)
+            .collect(Collectors.joining(" ")));
+    assertEquals(config, read(testPath.resolve("resources/prod/configmap-app.yaml")));
+    assertEquals(role, read(testPath.resolve("resources/_/clusterrole-app_reader.yaml")));
+    assertEquals(other, read(testPath.resolve("resources/_/secret-app-2.yaml")));
+
+    final ManifestIndex.Entry entry = index.find("ClusterRole", null, "app:reader");
+    assertEquals("rbac.authorization.k8s.io/v1", entry.getApiVersion());
+    assertEquals("app/templates/role.yaml", entry.getSource());
+    assertEquals(role, new String(index.read(entry), UTF_8));
+    assertEquals(secret, new String(index.read(index.find("Secret", null, "app")), UTF_8));
+    assertNull(index.find("ConfigMap", null, "app"));
+
+    final ManifestIndex loaded =
+        ManifestIndex.load(testPath.resolve("resources").resolve(ManifestIndex.INDEX_FILE));
+    assertEquals(index, loaded);
+    assertArrayEquals(config.getBytes(UTF_8), loaded.read(loaded.find("ConfigMap", "prod", "app")));
+  }
+
+  @Test
+  void replacesResourcesSplitBefore() throws IOException {
+
+    final Path manifest =
+        Files.write(
+            testPath.resolve("app.yaml"), "kind: Pod\nmetadata:\n  name: a\n".getBytes(UTF_8));
+    ManifestSplitter.split(manifest, testPath.resolve("resources"));
+    Files.write(manifest, "kind: Pod\nmetadata:\n  name: b\n".getBytes(UTF_8));
+    ManifestSplitter.split(manifest, testPath.resolve("resources"));
+
+    assertFalse(Files.exists(testPath.resolve("resources/_/pod-a.yaml")));
+    assertEquals(
+        "kind: Pod\nmetadata:\n  name: b\n", read(testPath.resolve("resources/_/pod-b.yaml")));
+  }
+
+  @Test
+  void findsResourcesNextToNamelessOnes() throws IOException {
+
+    final Path manifest =
+        Files.write(
+            testPath.resolve("app.yaml"),
+            "kind: List\nitems: []\n---\nkind: Pod\nmetadata:\n  name: a\n".getBytes(UTF_8));
+
+    final ManifestIndex index = ManifestSplitter.split(manifest, testPath.resolve("resources"));
+
+    assertEquals("_/pod-a.yaml", index.find("Pod", null, "a").getFile());
+    assertEquals("_/list.yaml", index.find("List", null, null).getFile());
+    assertNull(index.find("List", null, "a"));
+  }
+
+  @Test
+  void failsOnInvalidDocuments() throws IOException {
+
+    final Path manifest =
+        Files.write(testPath.resolve("app.yaml"), "kind: Pod\n---\nkind: [Pod\n".getBytes(UTF_8));
+
+    final IOException e =
+        assertThrows(
+            IOException.class,
+            () -> ManifestSplitter.split(manifest, testPath.resolve("resources")));
+    assertTrue(
+        e.getMessage().startsWith("The document at byte 14 of " + manifest.toAbsolutePath()));
+  }
+
+  private static String read(Path file) throws IOException {
+
+    return new String(Files.readAllBytes(file), UTF_8);
+  }
+}
@@ -0,0 +1,108 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OciRegistryClientTest {
+
+  private static final String BASIC =
+      "Basic " + Base64.getEncoder().encodeToString("user:secret".getBytes(UTF_8));
+
+  private final List<String> tokenQueries = new CopyOnWriteArrayList<>();
+
+  private HttpServer server;
+  private String registry;
+  private OciRegistryClient client;
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    registry = "localhost:" + server.getAddress().getPort();
+    server.createContext(
+        "/token",
+        exchange -> {
+          tokenQueries.add(exchange.getRequestURI().getQuery());
+          final boolean authorized =
+              BASIC.equals(exchange.getRequestHeaders().getFirst("Authorization"));
+          respond(exchange, authorized ? 200 : 401, "{\"token\":\"t0k3n\"}");
+        });
+    server.createContext(
+        "/v2/charts/app/manifests/",
+        exchange -> {
+          if (!"Bearer t0k3n".equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            exchange
+                .getResponseHeaders()
+                .add(
+                    "WWW-Authenticate",
+                    "Bearer realm=\"http://"
+                        + registry
+                        + "/token\",service=\"registry\",scope=\"repository:charts/app:pull\"");
+            respond(exchange, 401, "");
+          } else if (exchange.getRequestURI().getPath().endsWith("/1.0.0")) {
+            exchange.getResponseHeaders().add("Docker-Content-Digest", "sha256:abcd");
+            respond(exchange, 200, "");
+          } else {
+            respond(exchange, 404, "");
+          }
+        });
+    server.start();
+
+    client =
+        OciRegistryClient.builder()
+            .log(new SystemStreamLog())
+            .username("user")
+            .password("secret")
+            .plainHttp(true)
+            .connectTimeout(1000)
+            .readTimeout(1000)
+            .build();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  void obtainsTokenAndReturnsManifestDigest() throws IOException {
+
+    assertEquals("sha256:abcd", client.getManifestDigest(registry + "/charts/app:1.0.0"));
+    assertEquals("service=registry&scope=repository:charts/app:pull", tokenQueries.get(0));
+  }
+
+  @Test
+  void returnsNullForMissingManifest() throws IOException {
+
+    assertNull(client.getManifestDigest(registry + "/charts/app:2.0.0"));
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+
+    final byte[] bytes = body.getBytes(UTF_8);
+    if ("HEAD".equals(exchange.getRequestMethod()) || bytes.length == 0) {
+      exchange.sendResponseHeaders(status, -1);
+    } else {
+      exchange.sendResponseHeaders(status, bytes.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(bytes);
+      }
+    }
+    exchange.close();
+  }
+}
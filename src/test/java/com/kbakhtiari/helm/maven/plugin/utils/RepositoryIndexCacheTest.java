@@ -0,0 +1,157 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.kbakhtiari.helm.maven.plugin.pojo.HelmRepository;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RepositoryIndexCacheTest {
+
+  private static final String ETAG = "\"v1\"";
+  private static final String INDEX = "apiVersion: v1\nentries: {}\n";
+
+  private final List<String> conditions = new CopyOnWriteArrayList<>();
+
+  private HttpServer server;
+  private Path cacheDirectory;
+  private HelmRepository repository;
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    cacheDirectory = Files.createTempDirectory("repository-cache");
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/plain/index.yaml",
+        exchange -> {
+          conditions.add(exchange.getRequestHeaders().getFirst("If-None-Match"));
+          if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            respond(exchange, 304, new byte[0]);
+          } else {
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            respond(exchange, 200, INDEX.getBytes(UTF_8));
+          }
+        });
+    server.createContext(
+        "/gzip/index.yaml",
+        exchange -> {
+          conditions.add(exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+          exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+          exchange.getResponseHeaders().add("Last-Modified", "Sat, 17 Oct 2026 10:00:00 GMT");
+          respond(exchange, 200, gzip(INDEX));
+        });
+    server.start();
+    repository =
+        HelmRepository.builder()
+            .name("local")
+            .url("http://localhost:" + server.getAddress().getPort() + "/plain/")
+            .build();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+    deleteQuietly(cacheDirectory.toFile());
+  }
+
+  @Test
+  void revalidatesCachedIndex() throws IOException {
+
+    final Path index = newCache().refresh(repository);
+    assertEquals(cacheDirectory.resolve("local-index.yaml"), index);
+    assertEquals(INDEX, new String(Files.readAllBytes(index), UTF_8));
+    assertEquals(INDEX, gunzip(cacheDirectory.resolve("local-index.yaml.gz")));
+
+    Files.delete(index);
+    final RepositoryIndexCache cache = newCache();
+    cache.refresh(repository);
+    cache.refresh(repository);
+
+    assertEquals(2, cache.getHits());
+    assertEquals(0, cache.getMisses());
+    assertEquals(INDEX, new String(Files.readAllBytes(index), UTF_8));
+    assertNull(conditions.get(0));
+    assertEquals(ETAG, conditions.get(1));
+  }
+
+  @Test
+  void storesGzipEncodedIndexAsReceived() throws IOException {
+
+    repository.setUrl(repository.getUrl().replace("/plain/", "/gzip"));
+    final RepositoryIndexCache cache = newCache();
+    cache.refresh(repository);
+    cache.refresh(repository);
+
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertArrayEquals(
+        gzip(INDEX), Files.readAllBytes(cacheDirectory.resolve("local-index.yaml.gz")));
+    assertEquals(
+        INDEX, new String(Files.readAllBytes(cacheDirectory.resolve("local-index.yaml")), UTF_8));
+    assertEquals("Sat, 17 Oct 2026 10:00:00 GMT", conditions.get(1));
+  }
+
+  private RepositoryIndexCache newCache() {
+
+    return RepositoryIndexCache.builder()
+        .directory(cacheDirectory)
+        .log(new SystemStreamLog())
+        .retries(0)
+        .build();
+  }
+
+  private static byte[] gzip(String content) throws IOException {
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream os = new GZIPOutputStream(bytes)) {
+      os.write(content.getBytes(UTF_8));
+    }
+    return bytes.toByteArray();
+  }
+
+  private static String gunzip(Path file) throws IOException {
+
+    try (InputStream is = new GZIPInputStream(Files.newInputStream(file))) {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      for (int n; (n = is.read(buffer)) > 0; ) {
+        bytes.write(buffer, 0, n);
+      }
+      return new String(bytes.toByteArray(), UTF_8);
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+
+    if (body.length == 0) {
+      exchange.sendResponseHeaders(status, -1);
+    } else {
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    }
+    exchange.close();
+  }
+}
@@ -0,0 +1,67 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValuesMergerTest {
+
+  @Test
+  void mergesWithoutModifyingTheValues() {
+
+    final ValuesMerger merger =
+        ValuesMerger.of(
+            PackageUtils.toMap(
+                "{\"image\":{\"tag\":\"2.0\"},\"^a.b^\":{\"c\":\"d\"},\"replicas\":\"3\","
+                    + "\"new\":{\"^x.y^\":\"z\"}}"));
+    final Map<String, Object> image = new HashMap<>();
+    image.put("repository", "app");
+    image.put("tag", "1.0");
+    final Map<String, Object> untouched = Collections.singletonMap("enabled", true);
+    final Map<String, Object> values = new HashMap<>();
+    values.put("image", image);
+    values.put("a.b", Collections.singletonMap("e", "f"));
+    values.put("ingress", untouched);
+
+    final Map<String, Object> merged = merger.merge(values);
+
+    assertEquals("1.0", image.get("tag"));
+    assertEquals(3, values.size());
+    assertEquals("2.0", ((Map<?, ?>) merged.get("image")).get("tag"));
+    assertEquals("app", ((Map<?, ?>) merged.get("image")).get("repository"));
+    assertEquals(Collections.singletonMap("c", "d"), merged.get("a.b"));
+    assertEquals("3", merged.get("replicas"));
+    assertEquals(Collections.singletonMap("x.y", "z"), merged.get("new"));
+    assertSame(untouched, merged.get("ingress"));
+  }
+
+  @Test
+  void writesValuesFileOnlyWhenChanged() throws IOException {
+
+    final Path directory = Files.createTempDirectory("values");
+    try {
+      final Path valuesFile =
+          Files.write(directory.resolve("values.yaml"), "b: 1\na:\n  c: old\n".getBytes(UTF_8));
+      final ValuesMerger merger = ValuesMerger.of(PackageUtils.toMap("{\"a\":{\"c\":\"new\"}}"));
+
+      assertTrue(merger.apply(valuesFile));
+      assertEquals("b: 1\na:\n  c: \"new\"\n", new String(Files.readAllBytes(valuesFile), UTF_8));
+      assertFalse(merger.apply(valuesFile));
+      assertFalse(ValuesMerger.of(null).apply(valuesFile));
+    } finally {
+      deleteQuietly(directory.toFile());
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static com.kbakhtiari.helm.maven.plugin.utils.JavaUtils.asMap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ValuesPatcherTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+
+  private static final String VALUES =
+      "# the image\n"
+          + "image:\n"
+          + "  repository: app # keep me\n"
+          + "  tag: 1.0\n"
+          + "dashboard: |\n"
+          + "  {\"panels\": []}\n"
+          + "\n"
+          + "ingress:\n"
+          + "  hosts: [a, b]\n"
+          + "  annotations:\n"
+          + "    a.b/c: d\n"
+          + "replicas: 1\n";
+
+  @Test
+  void rewritesOnlyTheOverriddenEntries() throws IOException {
+
+    final ValuesMerger merger =
+        ValuesMerger.of(
+            PackageUtils.toMap(
+                "{\"image\":{\"tag\":\"2.0\",\"pullPolicy\":\"Always\"},"
+                    + "\"ingress\":{\"^annotations^\":{\"x\":\"y\"},\"hosts\":[\"c\"]},"
+                    + "\"resources\":{\"limits\":{\"cpu\":\"1\"}}}"));
+
+    final byte[] patched = patch(merger, VALUES);
+
+    assertEquals(
+        "# the image\n"
+            + "image:\n"
+            + "  repository: app # keep me\n"
+            + "  tag: \"2.0\"\n"
+            + "  pullPolicy: \"Always\"\n"
+            + "dashboard: |\n"
+            + "  {\"panels\": []}\n"
+            + "\n"
+            + "ingress:\n"
+            + "  hosts:\n"
+            + "  - \"c\"\n"
+            + "  annotations:\n"
+            + "    x: \"y\"\n"
+            + "replicas: 1\n"
+            + "resources:\n"
+            + "  limits:\n"
+            + "    cpu: \"1\"\n",
+        new String(patched, UTF_8));
+    assertEquals(
+        merger.merge(asMap(MAPPER.readValue(VALUES, Map.class))),
+        MAPPER.readValue(patched, Map.class));
+    assertArrayEquals(patched, patch(merger, new String(patched, UTF_8)));
+  }
+
+  @Test
+  void appendsAfterBlockScalars() throws IOException {
+
+    final ValuesMerger merger = ValuesMerger.of(PackageUtils.toMap("{\"b\":{\"d\":\"e\"}}"));
+    final String values = "a: 1\nb:\n  c: |\n    line\n\nf: 2";
+
+    final byte[] patched = patch(merger, values);
+
+    assertEquals("a: 1\nb:\n  c: |\n    line\n  d: \"e\"\n\nf: 2", new String(patched, UTF_8));
+    assertEquals(
+        merger.merge(asMap(MAPPER.readValue(values, Map.class))),
+        MAPPER.readValue(patched, Map.class));
+  }
+
+  @Test
+  void keepsTheLineBreaksOfTheFile() {
+
+    final ValuesMerger merger =
+        ValuesMerger.of(
+            PackageUtils.toMap("{\"b\":{\"c\":\"new\",\"d\":{\"e\":\"f\"}},\"g\":[\"h\"]}"));
+
+    final byte[] patched = patch(merger, "a: 1\r\nb:\r\n  c: old\r\n");
+
+    assertEquals(
+        "a: 1\r\nb:\r\n  c: \"new\"\r\n  d:\r\n    e: \"f\"\r\ng:\r\n- \"h\"\r\n",
+        new String(patched, UTF_8));
+  }
+
+  @Test
+  void leavesUnsafeDocumentsToARewrite() {
+
+    final ValuesMerger merger = ValuesMerger.of(PackageUtils.toMap("{\"a\":{\"b\":\"c\"}}"));
+
+    assertNull(patch(merger, "base: &base\n  x: 1\na:\n  <<: *base\n"));
+    assertNull(patch(merger, "a: {b: 1}\n"));
+    assertNull(patch(merger, "a:\n  b: 1\n---\nc: 2\n"));
+    assertNull(patch(merger, "a: [unclosed\n"));
+    assertNull(patch(merger, "# only comments\n"));
+  }
+
+  private static byte[] patch(ValuesMerger merger, String values) {
+
+    return ValuesPatcher.patch(values.getBytes(UTF_8), merger.getOverrides());
+  }
+}
@@ -0,0 +1,56 @@
+package com.kbakhtiari.helm.maven.plugin.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VersionConstraintTest {
+
+  @Test
+  void matchesLikeHelm() {
+
+    assertMatches("^1.2.3", "1.2.3", "1.9.0");
+    assertRejects("^1.2.3", "1.2.2", "2.0.0", "1.3.0-rc.1");
+    assertMatches("^0.2.3", "0.2.9");
+    assertRejects("^0.2.3", "0.3.0");
+    assertMatches("~1.2.3", "1.2.9");
+    assertRejects("~1.2.3", "1.3.0");
+    assertMatches("~1", "1.9.9");
+    assertMatches("1.2.x", "1.2.0", "1.2.7");
+    assertRejects("1.2.x", "1.3.0");
+    assertMatches(">= 1.2, < 2", "1.2.0", "1.99.0");
+    assertRejects(">= 1.2, < 2", "2.0.0", "1.1.9");
+    assertMatches("1.0.0 - 1.4", "1.4.0", "1.4.1");
+    assertRejects("1.0.0 - 1.4", "1.5.0");
+    assertMatches("<1.0.0 || >=2.0.0", "0.9.0", "2.1.0");
+    assertRejects("<1.0.0 || >=2.0.0", "1.5.0");
+    assertMatches(">1.2", "1.3.0");
+    assertRejects(">1.2", "1.2.9");
+    assertMatches(">=1.0.0-0", "1.1.0-rc.1");
+    assertMatches("*", "0.0.1");
+    assertMatches("!=1.2.3", "1.2.4");
+    assertRejects("!=1.2.3", "1.2.3");
+    assertThrows(IllegalArgumentException.class, () -> VersionConstraint.parse("latest"));
+  }
+
+  private static void assertMatches(String constraint, String... versions) {
+
+    for (String version : versions) {
+      assertEquals(
+          true,
+          VersionConstraint.parse(constraint).test(ChartVersion.parse(version)),
+          constraint + " should match " + version);
+    }
+  }
+
+  private static void assertRejects(String constraint, String... versions) {
+
+    for (String version : versions) {
+      assertEquals(
+          false,
+          VersionConstraint.parse(constraint).test(ChartVersion.parse(version)),
+          constraint + " should not match " + version);
+    }
+  }
+}